@@ -3,8 +3,20 @@ package com.connorhaigh.javavpk;
 import com.connorhaigh.javavpk.core.Archive;
 import com.connorhaigh.javavpk.core.Directory;
 import com.connorhaigh.javavpk.core.Entry;
+import com.connorhaigh.javavpk.core.Verification;
+import com.connorhaigh.javavpk.exceptions.ArchiveException;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class JavaVPK
 {
@@ -26,6 +38,8 @@ public class JavaVPK
 			System.out.println("\t" + JavaVPK.INPUT_OPTION + "\t\tSpecify the input VPK file");
 			System.out.println("\t" + JavaVPK.OUTPUT_OPTION +"\t\tSpecify the output directory");
 			System.out.println("\t" + JavaVPK.VERBOSE_OPTION + "\tToggle verbose output");
+			System.out.println("\t" + JavaVPK.THREADS_OPTION + "\tSpecify the number of worker threads");
+			System.out.println("\t" + JavaVPK.VERIFY_OPTION + "\tVerify entry checksums instead of extracting");
 
 			return;
 		}
@@ -34,6 +48,8 @@ public class JavaVPK
 		String input = null;
 		String output = null;
 		boolean verbose = false;
+		int threads = 0;
+		boolean verify = false;
 
 		try
 		{
@@ -58,13 +74,27 @@ public class JavaVPK
 					{
 						verbose = true;
 
+						break;
+					}
+					case JavaVPK.THREADS_OPTION:
+					{
+						threads = Integer.parseInt(args[++argument]);
+						if (threads < 1)
+							throw new Exception();
+
+						break;
+					}
+					case JavaVPK.VERIFY_OPTION:
+					{
+						verify = true;
+
 						break;
 					}
 				}
 			}
 
 			//check arguments
-			if (input == null || output == null)
+			if (input == null || (output == null && !verify))
 				throw new Exception();
 		}
 		catch (Exception exception)
@@ -77,9 +107,18 @@ public class JavaVPK
 
 		//create files
 		File inputFile = new File(input);
+
+		if (verify)
+		{
+			//verify instead
+			JavaVPK.verify(inputFile, (threads > 0 ? threads : Runtime.getRuntime().availableProcessors()), verbose);
+
+			return;
+		}
+
 		File outputDirectory = new File(output);
 
-		try
+		try (Archive archive = new Archive(inputFile))
 		{
 			//create directory
 			System.out.println("Creating output directory...");
@@ -87,7 +126,6 @@ public class JavaVPK
 
 			//load
 			System.out.println("Loading archive...");
-			Archive archive = new Archive(inputFile);
 			archive.load();
 
 			if (verbose)
@@ -99,31 +137,34 @@ public class JavaVPK
 				System.out.println("\tDirectories: " + archive.getDirectories().size());
 			}
 
-			//loop directories
 			System.out.println("Extracting all entries...");
-			for (Directory directory : archive.getDirectories())
+			if (threads > 1)
 			{
-				if (verbose)
-					System.out.println("\t" + directory.getPath());
-
-				//loop entries
-				for (Entry entry : directory.getEntries())
+				//extract in parallel
+				JavaVPK.extractParallel(archive, outputDirectory, threads, verbose);
+			}
+			else
+			{
+				//loop directories
+				for (Directory directory : archive.getDirectories())
 				{
 					if (verbose)
-						System.out.println("\t\t" + entry.getFullName());
+						System.out.println("\t" + directory.getPath());
 
-					try
+					//create directory
+					File entryDirectory = new File(outputDirectory, directory.getPath());
+					entryDirectory.mkdirs();
+
+					//loop entries
+					for (Entry entry : directory.getEntries())
 					{
+						if (verbose)
+							System.out.println("\t\t" + entry.getFullName());
+
 						//extract
-						File entryDirectory = new File(outputDirectory, directory.getPath());
 						File entryFile = new File(outputDirectory, directory.getPathFor(entry));
-						entryDirectory.mkdirs();
 						entry.extract(entryFile);
 					}
-					catch (Exception exception)
-					{
-						throw exception;
-					}
 				}
 			}
 
@@ -138,7 +179,187 @@ public class JavaVPK
 		}
 	}
 
+	/**
+	 * Verifies the checksums of all entries in an archive and reports the results.
+	 * @param inputFile the archive file
+	 * @param threads the number of worker threads
+	 * @param verbose if archive details should be printed
+	 */
+	private static void verify(File inputFile, int threads, boolean verbose)
+	{
+		try (Archive archive = new Archive(inputFile))
+		{
+			//load
+			System.out.println("Loading archive...");
+			archive.load();
+
+			if (verbose)
+			{
+				//details
+				System.out.println("\t" + inputFile.getName());
+				System.out.println("\tDirectories: " + archive.getDirectories().size());
+				System.out.println("\tThreads: " + threads);
+			}
+
+			//verify
+			System.out.println("Verifying all entries...");
+			Verification verification = archive.verify(threads);
+
+			for (Verification.Mismatch mismatch : verification.getMismatches())
+			{
+				if (mismatch.isTruncated())
+					System.out.println("\tTruncated: " + mismatch.getPath());
+				else
+					System.out.println(String.format("\tMismatch: %s (expected %08x, got %08x)", mismatch.getPath(), mismatch.getExpectedCrc(), mismatch.getActualCrc()));
+			}
+
+			//summary
+			System.out.println(String.format("Verified %d entries (%.1f MB) in %.2f s, %.1f MB/s",
+				verification.getEntryCount(),
+				verification.getByteCount() / (1024.0 * 1024.0),
+				verification.getDuration() / 1e9,
+				verification.getThroughput() / (1024.0 * 1024.0)
+			));
+
+			if (verification.isValid())
+				System.out.println("All entries are valid");
+			else
+				System.err.println(verification.getMismatches().size() + " entries failed verification");
+		}
+		catch (Exception exception)
+		{
+			//failed
+			System.err.println();
+			System.err.println("Error during verification: " + exception.getMessage());
+		}
+	}
+
+	/**
+	 * Extracts all entries of an archive on a work-stealing pool.
+	 * Entries are ordered by child archive and offset, and each worker extracts a contiguous run of that order,
+	 * so reads from every child archive stay mostly sequential.
+	 * @param archive the loaded archive
+	 * @param outputDirectory the directory to extract to
+	 * @param threads the number of worker threads
+	 * @param verbose if each entry should be printed
+	 * @throws Exception if an entry could not be extracted
+	 */
+	private static void extractParallel(Archive archive, File outputDirectory, int threads, boolean verbose) throws Exception
+	{
+		//collect entries and create each directory once
+		List<Entry> entries = new ArrayList<Entry>();
+		Map<Entry, File> targets = new IdentityHashMap<Entry, File>();
+		for (Directory directory : archive.getDirectories())
+		{
+			new File(outputDirectory, directory.getPath()).mkdirs();
+
+			for (Entry entry : directory.getEntries())
+			{
+				entries.add(entry);
+				targets.put(entry, new File(outputDirectory, directory.getPathFor(entry)));
+			}
+		}
+
+		//group by child archive, then sort by offset
+		entries.sort(Comparator.comparingInt(Entry::getArchiveIndex).thenComparingLong(entry -> Integer.toUnsignedLong(entry.getOffset())));
+
+		//workers record the first failure instead of throwing it, as the pool would wrap it
+		AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			pool.invoke(new ExtractAction(entries, targets, 0, entries.size(), verbose, failure));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		if (failure.get() != null)
+			throw failure.get();
+	}
+
+	/**
+	 * Extracts a contiguous range of sorted entries, splitting it in half until it is small enough.
+	 */
+	private static class ExtractAction extends RecursiveAction
+	{
+		/**
+		 * Creates a new extraction action.
+		 * @param entries the sorted entries
+		 * @param targets the target file for each entry
+		 * @param start the first entry to extract, inclusive
+		 * @param end the last entry to extract, exclusive
+		 * @param verbose if each entry should be printed
+		 * @param failure holds the first entry that failed to extract, which stops the remaining entries
+		 */
+		public ExtractAction(List<Entry> entries, Map<Entry, File> targets, int start, int end, boolean verbose, AtomicReference<Exception> failure)
+		{
+			this.entries = entries;
+			this.targets = targets;
+			this.start = start;
+			this.end = end;
+			this.verbose = verbose;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (this.end - this.start > ExtractAction.THRESHOLD)
+			{
+				//split
+				int middle = (this.start + this.end) >>> 1;
+				ForkJoinTask.invokeAll(
+					new ExtractAction(this.entries, this.targets, this.start, middle, this.verbose, this.failure),
+					new ExtractAction(this.entries, this.targets, middle, this.end, this.verbose, this.failure)
+				);
+
+				return;
+			}
+
+			for (int index = this.start; index < this.end; index++)
+			{
+				//stop once any worker has failed
+				if (this.failure.get() != null)
+					return;
+
+				Entry entry = this.entries.get(index);
+				File target = this.targets.get(entry);
+
+				if (this.verbose)
+					System.out.println("\t" + target.getPath());
+
+				try
+				{
+					//extract
+					entry.extract(target);
+				}
+				catch (IOException | ArchiveException exception)
+				{
+					//keep the first failure, with later ones suppressed
+					if (!this.failure.compareAndSet(null, exception))
+						this.failure.get().addSuppressed(exception);
+
+					return;
+				}
+			}
+		}
+
+		private static final int THRESHOLD = 32;
+		private static final long serialVersionUID = 1;
+
+		private final List<Entry> entries;
+		private final Map<Entry, File> targets;
+		private final int start;
+		private final int end;
+		private final boolean verbose;
+		private final AtomicReference<Exception> failure;
+	}
+
 	public static final String INPUT_OPTION = "-input";
 	public static final String OUTPUT_OPTION = "-output";
 	public static final String VERBOSE_OPTION = "-verbose";
+	public static final String THREADS_OPTION = "-threads";
+	public static final String VERIFY_OPTION = "-verify";
 }
@@ -3,14 +3,36 @@ package com.connorhaigh.javavpk.core;
 import com.connorhaigh.javavpk.exceptions.ArchiveException;
 import com.connorhaigh.javavpk.exceptions.EntryException;
 
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-
-public class Archive
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+public class Archive implements Closeable
 {
 	/**
 	 * Creates a new VPK archive.
@@ -28,25 +50,51 @@ public class Archive
 		this.headerLength = 0;
 
 		this.directories = new ArrayList<Directory>();
+		this.index = new HashMap<String, Entry>();
+		this.channels = new ConcurrentHashMap<Integer, FileChannel>();
 	}
 
 	/**
 	 * Load the raw data from file to this archive.
+	 * The directory tree is mapped into memory and decoded in a single pass.
 	 * @throws IOException if the archive could not be read
 	 * @throws ArchiveException if a general archive exception occurs
 	 * @throws EntryException if a general entry exception occurs
 	 */
 	public void load() throws IOException, ArchiveException, EntryException
 	{
-		try (FileInputStream fileInputStream = new FileInputStream(this.file))
+		this.load(false);
+	}
+
+	/**
+	 * Load the raw data from file to this archive.
+	 * The directory tree is mapped into memory and decoded in a single pass.
+	 * A compact archive keeps its entries in primitive columns with pooled strings, and creates
+	 * {@link Directory} and {@link Entry} instances as lightweight views on demand.
+	 * @param compact if the compact representation should be used
+	 * @throws IOException if the archive could not be read
+	 * @throws ArchiveException if a general archive exception occurs
+	 * @throws EntryException if a general entry exception occurs
+	 */
+	public void load(boolean compact) throws IOException, ArchiveException, EntryException
+	{
+		try (FileChannel fileChannel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ))
 		{
 			//check for multiple child archives
 			this.multiPart = this.file.getName().contains("_dir");
 
 			//read header
-			this.signature = this.readUnsignedInt(fileInputStream);
-			this.version = this.readUnsignedInt(fileInputStream);
-			this.treeLength = this.readUnsignedInt(fileInputStream);
+			ByteBuffer header = ByteBuffer.allocate(Archive.VERSION_TWO_HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && fileChannel.read(header) != -1);
+			header.flip();
+
+			if (header.remaining() < Archive.VERSION_ONE_HEADER_SIZE)
+				throw new ArchiveException("Truncated header");
+
+			this.signature = header.getInt();
+			this.version = header.getInt();
+			this.treeLength = header.getInt();
 
 			//check signature and version
 			if (this.signature != Archive.SIGNATURE)
@@ -65,67 +113,170 @@ public class Archive
 				}
 				case Archive.VERSION_TWO:
 				{
+					//extra data serves no purpose right now
 					this.headerLength = Archive.VERSION_TWO_HEADER_SIZE;
+				}
+			}
+
+			//check tree bounds
+			if (this.treeLength < 0 || this.headerLength + (long) this.treeLength > fileChannel.size())
+				throw new ArchiveException("Truncated directory tree");
+
+			//map tree
+			MappedByteBuffer tree = fileChannel.map(FileChannel.MapMode.READ_ONLY, this.headerLength, this.treeLength);
+			tree.order(ByteOrder.LITTLE_ENDIAN);
 
-					//read extra data
-					//serves no purpose right now
-					this.readUnsignedInt(fileInputStream);
-					this.readUnsignedInt(fileInputStream);
-					this.readUnsignedInt(fileInputStream);
-					this.readUnsignedInt(fileInputStream);
+			try
+			{
+				if (compact)
+				{
+					this.table = EntryTable.read(tree);
+					this.directories = this.table.createDirectories(this);
+				}
+				else
+				{
+					this.readTree(tree);
 				}
 			}
+			catch (BufferUnderflowException exception)
+			{
+				throw new ArchiveException("Truncated directory tree");
+			}
+		}
+	}
 
-			while (fileInputStream.available()!=0)
+	/**
+	 * Decodes the directory tree from a buffer positioned at its start.
+	 * @param tree the little-endian tree buffer
+	 * @throws ArchiveException if the tree is malformed
+	 */
+	private void readTree(ByteBuffer tree) throws ArchiveException
+	{
+		//scratch space for string decoding, shared by the whole tree
+		byte[] scratch = new byte[Archive.SCRATCH_SIZE];
+
+		while (tree.hasRemaining())
+		{
+			//get extension
+			String extension = this.readString(tree, scratch);
+			if (extension.isEmpty())
+				break;
+
+			while (true)
 			{
-				//get extension
-				String extension = this.readString(fileInputStream);
-				if (extension.isEmpty())
+				//get path
+				String path = this.readString(tree, scratch);
+				if (path.isEmpty())
 					break;
 
+				//directory
+				Directory directory = new Directory(path);
+				this.directories.add(directory);
+
 				while (true)
 				{
-					//get path
-					String path = this.readString(fileInputStream);
-					if (path.isEmpty())
+					//get filename
+					String filename = this.readString(tree, scratch);
+					if (filename.isEmpty())
 						break;
 
-					//directory
-					Directory directory = new Directory(path);
-					this.directories.add(directory);
+					//read data
+					int crc = tree.getInt();
+					int preloadSize = Short.toUnsignedInt(tree.getShort());
+					short archiveIndex = tree.getShort();
+					int entryOffset = tree.getInt();
+					int entryLength = tree.getInt();
+					short terminator = tree.getShort();
+					byte[] preloadData = null;
 
-					while (true)
+					if (preloadSize > 0)
 					{
-						//get filename
-						String filename = this.readString(fileInputStream);
-						if (filename.isEmpty())
-							break;
-
-						//read data
-						int crc = this.readUnsignedInt(fileInputStream);
-						short preloadSize = this.readUnsignedShort(fileInputStream);
-						short archiveIndex = this.readUnsignedShort(fileInputStream);
-						int entryOffset = this.readUnsignedInt(fileInputStream);
-						int entryLength = this.readUnsignedInt(fileInputStream);
-						short terminator = this.readUnsignedShort(fileInputStream);
-						byte[] preloadData = null;
-
-						if (preloadSize > 0)
-						{
-							//read preload data
-							preloadData = new byte[preloadSize];
-							fileInputStream.read(preloadData);
-						}
-
-						//create entry
-						Entry entry = new Entry(this, archiveIndex, preloadData, filename, extension, crc, entryOffset, entryLength, terminator);
-						directory.addEntry(entry);
+						//read preload data
+						preloadData = new byte[preloadSize];
+						tree.get(preloadData);
 					}
+
+					//create entry
+					Entry entry = new Entry(this, archiveIndex, preloadData, filename, extension, crc, entryOffset, entryLength, terminator);
+					directory.addEntry(entry);
+
+					//index entry, first occurrence wins
+					this.index.putIfAbsent(Archive.indexKey(directory.getPath(), entry.getFileName(), entry.getExtension()), entry);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Finds an entry by its directory, file name and extension.
+	 * The lookup uses an index built at load time, so entries added afterwards are not found.
+	 * @param directory the directory path
+	 * @param name the file name, without extension
+	 * @param extension the extension
+	 * @return the entry, or null
+	 */
+	public Entry findEntry(String directory, String name, String extension)
+	{
+		if (this.table != null)
+		{
+			//look up compact row
+			int entry = this.table.find(directory, name, extension);
+			return (entry < 0 ? null : this.table.getEntry(this, entry));
+		}
+
+		return this.index.get(Archive.indexKey(directory, name, extension));
+	}
+
+	/**
+	 * Visits the names of every entry in this archive.
+	 * Compact archives are visited without creating entries.
+	 * @param visitor the visitor
+	 */
+	public void visitEntries(EntryVisitor visitor)
+	{
+		if (this.table != null)
+		{
+			this.table.visitEntries(visitor);
+			return;
+		}
+
+		for (Directory directory : this.directories)
+		{
+			for (Entry entry : directory.getEntries())
+				visitor.visit(directory.getPath(), entry.getFileName(), entry.getExtension());
+		}
+	}
+
+	/**
+	 * Loads this archive from a previously decoded compact entry table, without reading the directory tree.
+	 * @param table the entry table
+	 * @param signature the signature
+	 * @param version the internal version
+	 * @param treeLength the length of the root tree
+	 * @param headerLength the length of the header
+	 */
+	void load(EntryTable table, int signature, int version, int treeLength, int headerLength)
+	{
+		this.multiPart = this.file.getName().contains("_dir");
+
+		this.signature = signature;
+		this.version = version;
+		this.treeLength = treeLength;
+		this.headerLength = headerLength;
+
+		this.table = table;
+		this.directories = table.createDirectories(this);
+	}
+
+	/**
+	 * Returns the compact entry table of this archive.
+	 * @return the entry table, or null if this archive is not compact
+	 */
+	EntryTable getTable()
+	{
+		return this.table;
+	}
+
 	/**
 	 * Returns a child archive that belongs to this parent.
 	 * @param index the index of the archive
@@ -152,64 +303,492 @@ public class Archive
 	}
 
 	/**
-	 * Reads a stream character by character until a null terminator is reached.
-	 * @param fileInputStream the stream to read
-	 * @return the assembled string
-	 * @throws IOException if the stream could not be read
+	 * Returns the file holding the data for a child archive index.
+	 * Entries with the embedded index live in the directory file itself.
+	 * @param index the index of the archive
+	 * @return the data file
+	 * @throws ArchiveException if this archive is not made up of multiple children
 	 */
-	private String readString(FileInputStream fileInputStream) throws IOException
+	public File getDataFile(int index) throws ArchiveException
 	{
-		//builder
-		StringBuilder stringBuilder = new StringBuilder();
+		if (index == Entry.TERMINATOR || !this.multiPart)
+			return this.file;
+
+		return this.getChildArchive(index);
+	}
 
-		//read
-		int character = 0;
-		while ((character = fileInputStream.read()) != Archive.NULL_TERMINATOR)
-			stringBuilder.append((char) character);
+	/**
+	 * Returns the offset that entry offsets for a child archive index are relative to.
+	 * @param index the index of the archive
+	 * @return the base offset, in bytes
+	 */
+	public long getDataOffset(int index)
+	{
+		if (index == Entry.TERMINATOR)
+			return this.headerLength + Integer.toUnsignedLong(this.treeLength);
 
-		return stringBuilder.toString();
+		return 0;
 	}
 
 	/**
-	 * Reads an unsigned integer (4 bytes) from a stream.
-	 * @param fileInputStream the stream to read
-	 * @return the unsigned integer
-	 * @throws IOException if the stream could not be read
+	 * Returns the shared read channel for a child archive index, opening it if needed.
+	 * The channel must only be used for positional operations, as it is shared between readers.
+	 * An interrupted reader closes it for every thread, so the reads of this archive reopen it and retry.
+	 * @param index the index of the archive
+	 * @return the open channel
+	 * @throws IOException if the child archive could not be opened
+	 * @throws ArchiveException if this archive is not made up of multiple children
 	 */
-	private int readUnsignedInt(FileInputStream fileInputStream) throws IOException
+	public FileChannel getChannel(int index) throws IOException, ArchiveException
 	{
-		return this.readBytes(fileInputStream, 4).getInt();
+		//fast path
+		FileChannel channel = this.channels.get(index);
+		if (channel != null && channel.isOpen())
+			return channel;
+
+		synchronized (this.channels)
+		{
+			//reopen channels closed by an interrupted reader
+			channel = this.channels.get(index);
+			if (channel == null || !channel.isOpen())
+			{
+				channel = FileChannel.open(this.getDataFile(index).toPath(), StandardOpenOption.READ);
+				this.channels.put(index, channel);
+			}
+
+			return channel;
+		}
 	}
 
 	/**
-	 * Reads an unsigned short (2 bytes) from a stream.
-	 * @param fileInputStream the stream to read
-	 * @return the unsigned short
-	 * @throws IOException if the stream could not be read
+	 * Returns a read-only view of data in a child archive, without copying it.
+	 * Only the requested range is mapped, so views never pin whole child archives in memory.
+	 * Mappings are released by the garbage collector once the view is unreachable, not when this archive is closed.
+	 * @param index the index of the archive
+	 * @param position the position of the data, relative to the data offset of the archive
+	 * @param length the length of the data
+	 * @return the read-only view
+	 * @throws IOException if the child archive could not be mapped, or ends early
+	 * @throws ArchiveException if this archive is not made up of multiple children
 	 */
-	private short readUnsignedShort(FileInputStream fileInputStream) throws IOException
+	public ByteBuffer map(int index, long position, long length) throws IOException, ArchiveException
 	{
-		return this.readBytes(fileInputStream, 2).getShort();
+		long offset = this.getDataOffset(index) + position;
+		long end = offset + length;
+
+		FileChannel channel = this.getChannel(index);
+		for (int attempts = 1; ; attempts++)
+		{
+			try
+			{
+				if (end > channel.size())
+					throw new EOFException("Unexpected end of " + this.getDataFile(index).getName());
+
+				return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			}
+			catch (ClosedByInterruptException exception)
+			{
+				throw exception;
+			}
+			catch (ClosedChannelException exception)
+			{
+				//closed under us by another reader's interrupt
+				channel = this.reopenChannel(index, exception, attempts);
+			}
+		}
 	}
 
 	/**
-	 * Reads the specified amount of bytes from a stream.
-	 * @param fileInputStream the stream to read
-	 * @param size the amount of bytes to read
-	 * @return the byte buffer
-	 * @throws IOException if the stream could not be read
+	 * Reads data from a child archive until the destination buffer is full.
+	 * This is safe to call from multiple threads at once.
+	 * @param index the index of the archive
+	 * @param position the position to read from, relative to the data offset of the archive
+	 * @param destination the buffer to fill
+	 * @throws IOException if the child archive could not be read, or ends early
+	 * @throws ArchiveException if this archive is not made up of multiple children
 	 */
-	private ByteBuffer readBytes(FileInputStream fileInputStream, int size) throws IOException
+	public void read(int index, long position, ByteBuffer destination) throws IOException, ArchiveException
 	{
-		//byte array
-		byte[] buffer = new byte[size];
-		fileInputStream.read(buffer);
+		while (destination.hasRemaining())
+		{
+			int read = this.readAvailable(index, position, destination);
+			if (read < 0)
+				throw new EOFException("Unexpected end of " + this.getDataFile(index).getName());
+
+			position += read;
+		}
+	}
 
-		//byte buffer
-		ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
-		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+	/**
+	 * Reads as much data from a child archive as is available in one read, like {@link FileChannel#read(ByteBuffer, long)}.
+	 * This is safe to call from multiple threads at once.
+	 * @param index the index of the archive
+	 * @param position the position to read from, relative to the data offset of the archive
+	 * @param destination the buffer to read into
+	 * @return the amount of bytes read, or -1 at the end of the child archive
+	 * @throws IOException if the child archive could not be read
+	 * @throws ArchiveException if this archive is not made up of multiple children
+	 */
+	int readAvailable(int index, long position, ByteBuffer destination) throws IOException, ArchiveException
+	{
+		FileChannel channel = this.getChannel(index);
+		long offset = this.getDataOffset(index) + position;
+		int start = destination.position();
+
+		for (int attempts = 1; ; attempts++)
+		{
+			try
+			{
+				return channel.read(destination, offset);
+			}
+			catch (ClosedByInterruptException exception)
+			{
+				throw exception;
+			}
+			catch (ClosedChannelException exception)
+			{
+				//a read cut short by the close may still have filled part of the buffer
+				if (destination.position() > start)
+					return (destination.position() - start);
 
-		return byteBuffer;
+				//closed under us by another reader's interrupt
+				channel = this.reopenChannel(index, exception, attempts);
+			}
+		}
+	}
+
+	/**
+	 * Transfers data from a child archive directly to another channel, without copying through the heap.
+	 * This is safe to call from multiple threads at once.
+	 * @param index the index of the archive
+	 * @param position the position to transfer from, relative to the data offset of the archive
+	 * @param count the amount of bytes to transfer
+	 * @param target the channel to write to
+	 * @throws IOException if the child archive could not be read, or ends early
+	 * @throws ArchiveException if this archive is not made up of multiple children
+	 */
+	public void transfer(int index, long position, long count, WritableByteChannel target) throws IOException, ArchiveException
+	{
+		FileChannel channel = this.getChannel(index);
+		long offset = this.getDataOffset(index) + position;
+		long end = offset + count;
+		int attempts = 0;
+
+		while (offset < end)
+		{
+			long transferred;
+			try
+			{
+				transferred = channel.transferTo(offset, end - offset, target);
+				if (transferred <= 0 && offset >= channel.size())
+					throw new EOFException("Unexpected end of " + this.getDataFile(index).getName());
+			}
+			catch (ClosedByInterruptException exception)
+			{
+				throw exception;
+			}
+			catch (ClosedChannelException exception)
+			{
+				//the target may have been closed rather than the shared channel
+				if (!target.isOpen())
+					throw exception;
+
+				//closed under us by another reader's interrupt
+				channel = this.reopenChannel(index, exception, ++attempts);
+				continue;
+			}
+
+			if (transferred <= 0)
+			{
+				//no progress, copy the rest through the heap instead
+				this.copy(index, offset - this.getDataOffset(index), end - offset, target);
+
+				return;
+			}
+
+			offset += transferred;
+		}
+	}
+
+	/**
+	 * Copies data from a child archive to another channel through a heap buffer.
+	 * @param index the index of the archive
+	 * @param position the position to copy from, relative to the data offset of the archive
+	 * @param count the amount of bytes to copy
+	 * @param target the channel to write to
+	 * @throws IOException if the child archive could not be read, or the target accepts no data
+	 * @throws ArchiveException if this archive is not made up of multiple children
+	 */
+	private void copy(int index, long position, long count, WritableByteChannel target) throws IOException, ArchiveException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, Archive.COPY_BUFFER_SIZE));
+		while (count > 0)
+		{
+			//fill
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), count));
+			this.read(index, position, buffer);
+			buffer.flip();
+
+			//drain
+			while (buffer.hasRemaining())
+			{
+				if (target.write(buffer) <= 0)
+					throw new IOException("Target channel accepted no data");
+			}
+
+			position += buffer.limit();
+			count -= buffer.limit();
+		}
+	}
+
+	/**
+	 * Reopens the shared read channel for a child archive after it was closed during an operation.
+	 * NIO closes a channel for every thread when any thread using it is interrupted, so readers on other threads retry
+	 * with a new channel a bounded number of times instead of failing.
+	 * @param index the index of the archive
+	 * @param exception the exception the closed channel was reported with
+	 * @param attempts the number of times the operation has been retried, including this one
+	 * @return the reopened channel
+	 * @throws IOException if the retries are used up, or the child archive could not be reopened
+	 * @throws ArchiveException if this archive is not made up of multiple children
+	 */
+	private FileChannel reopenChannel(int index, ClosedChannelException exception, int attempts) throws IOException, ArchiveException
+	{
+		if (attempts > Archive.CHANNEL_RETRIES || Thread.currentThread().isInterrupted())
+			throw exception;
+
+		return this.getChannel(index);
+	}
+
+	/**
+	 * Verifies the CRC checksum of every entry in this archive.
+	 * Each child archive is checked by its own worker, which reads entries in offset order through large mapped windows.
+	 * @param threads the maximum number of worker threads
+	 * @return the verification result
+	 * @throws IOException if a child archive could not be read
+	 * @throws ArchiveException if a general archive exception occurs
+	 */
+	public Verification verify(int threads) throws IOException, ArchiveException
+	{
+		long start = System.nanoTime();
+
+		//group entries by child archive
+		Map<Integer, List<Entry>> groups = new TreeMap<Integer, List<Entry>>();
+		Map<Entry, String> paths = new IdentityHashMap<Entry, String>();
+		for (Directory directory : this.directories)
+		{
+			for (Entry entry : directory.getEntries())
+			{
+				groups.computeIfAbsent(entry.getArchiveIndex(), index -> new ArrayList<Entry>()).add(entry);
+				paths.put(entry, directory.getPathFor(entry));
+			}
+		}
+
+		//one worker per child archive
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, groups.size())));
+		try
+		{
+			List<Future<Verification>> futures = new ArrayList<Future<Verification>>(groups.size());
+			for (Map.Entry<Integer, List<Entry>> group : groups.entrySet())
+				futures.add(executor.submit(() -> this.verify(group.getKey(), group.getValue(), paths)));
+
+			//merge results
+			List<Verification.Mismatch> mismatches = new ArrayList<Verification.Mismatch>();
+			long entryCount = 0;
+			long byteCount = 0;
+			for (Future<Verification> future : futures)
+			{
+				Verification verification = future.get();
+				mismatches.addAll(verification.getMismatches());
+				entryCount += verification.getEntryCount();
+				byteCount += verification.getByteCount();
+			}
+
+			return new Verification(mismatches, entryCount, byteCount, System.nanoTime() - start);
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Verification interrupted");
+		}
+		catch (ExecutionException exception)
+		{
+			//unwrap worker failures
+			Throwable cause = exception.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof ArchiveException)
+				throw (ArchiveException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+
+			throw new IOException(cause);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Verifies the entries of a single child archive.
+	 * @param index the index of the archive
+	 * @param entries the entries stored in the child archive
+	 * @param paths the full path of each entry
+	 * @return the verification result, without a duration
+	 * @throws IOException if the child archive could not be read
+	 * @throws ArchiveException if a general archive exception occurs
+	 */
+	private Verification verify(int index, List<Entry> entries, Map<Entry, String> paths) throws IOException, ArchiveException
+	{
+		entries.sort(Comparator.comparingLong(entry -> Integer.toUnsignedLong(entry.getOffset())));
+
+		List<Verification.Mismatch> mismatches = new ArrayList<Verification.Mismatch>();
+		long byteCount = 0;
+
+		FileChannel channel = null;
+		MappedByteBuffer window = null;
+		long windowStart = 0;
+		long windowEnd = 0;
+
+		CRC32 crc = new CRC32();
+		for (Entry entry : entries)
+		{
+			crc.reset();
+			boolean truncated = false;
+
+			//preload data
+			byte[] preloadData = entry.getPreloadData();
+			if (preloadData != null)
+			{
+				crc.update(preloadData);
+				byteCount += preloadData.length;
+			}
+
+			//archive data
+			long length = Integer.toUnsignedLong(entry.getLength());
+			if (length > 0)
+			{
+				if (channel == null)
+					channel = this.getChannel(index);
+
+				long entryStart = this.getDataOffset(index) + Integer.toUnsignedLong(entry.getOffset());
+				long entryEnd = entryStart + length;
+				long size = channel.size();
+
+				if (entryEnd > size)
+				{
+					truncated = true;
+				}
+				else
+				{
+					//move window
+					if (window == null || entryStart < windowStart || entryEnd > windowEnd)
+					{
+						windowStart = entryStart;
+						windowEnd = Math.min(size, entryStart + Math.max(Archive.VERIFY_WINDOW_SIZE, length));
+						window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+					}
+
+					ByteBuffer data = window.duplicate();
+					data.limit((int) (entryEnd - windowStart));
+					data.position((int) (entryStart - windowStart));
+					crc.update(data);
+					byteCount += length;
+				}
+			}
+
+			if (truncated || (int) crc.getValue() != entry.getCrc())
+				mismatches.add(new Verification.Mismatch(paths.get(entry), entry, (int) crc.getValue(), truncated));
+		}
+
+		return new Verification(mismatches, entries.size(), byteCount, 0);
+	}
+
+	/**
+	 * Closes all open child archive channels.
+	 * @throws IOException if a channel could not be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (this.channels)
+		{
+			IOException failure = null;
+			for (FileChannel channel : this.channels.values())
+			{
+				try
+				{
+					channel.close();
+				}
+				catch (IOException exception)
+				{
+					if (failure == null)
+						failure = exception;
+					else
+						failure.addSuppressed(exception);
+				}
+			}
+
+			this.channels.clear();
+			if (failure != null)
+				throw failure;
+		}
+	}
+
+	/**
+	 * Reads a null-terminated string from a buffer, leaving it positioned after the terminator.
+	 * @param buffer the buffer to read
+	 * @param scratch reusable scratch space, must be at least {@link #SCRATCH_SIZE} bytes
+	 * @return the assembled string
+	 * @throws ArchiveException if the string is not terminated
+	 */
+	private String readString(ByteBuffer buffer, byte[] scratch) throws ArchiveException
+	{
+		//find terminator
+		int start = buffer.position();
+		int end = start;
+		int limit = buffer.limit();
+		while (end < limit && buffer.get(end) != Archive.NULL_TERMINATOR)
+			end++;
+
+		if (end >= limit)
+			throw new ArchiveException("Unterminated string in directory tree");
+
+		//decode
+		int length = end - start;
+		String string;
+		if (length <= scratch.length)
+		{
+			buffer.get(scratch, 0, length);
+			string = new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+		}
+		else
+		{
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			string = new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+
+		//skip terminator
+		buffer.get();
+
+		return string;
+	}
+
+	/**
+	 * Builds the lookup index key for an entry.
+	 * @param directory the directory path
+	 * @param name the file name
+	 * @param extension the extension
+	 * @return the index key
+	 */
+	private static String indexKey(String directory, String name, String extension)
+	{
+		return (directory + Directory.SEPARATOR + name + "." + extension);
 	}
 
 	/**
@@ -268,6 +847,15 @@ public class Archive
 		return this.headerLength;
 	}
 
+	/**
+	 * Returns if this archive uses the compact entry representation.
+	 * @return if this archive is compact
+	 */
+	public boolean isCompact()
+	{
+		return (this.table != null);
+	}
+
 	/**
 	 * Returns the list of directories in this archive.
 	 * @return the list of directories
@@ -288,6 +876,11 @@ public class Archive
 	public static final int VERSION_ONE_HEADER_SIZE = 12;
 	public static final int VERSION_TWO_HEADER_SIZE = 28;
 
+	private static final int SCRATCH_SIZE = 256;
+	private static final long VERIFY_WINDOW_SIZE = 64 * 1024 * 1024;
+	private static final int CHANNEL_RETRIES = 3;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
 	private File file;
 	private boolean multiPart;
 
@@ -297,4 +890,7 @@ public class Archive
 	private int headerLength;
 
 	private ArrayList<Directory> directories;
+	private HashMap<String, Entry> index;
+	private EntryTable table;
+	private ConcurrentHashMap<Integer, FileChannel> channels;
 }
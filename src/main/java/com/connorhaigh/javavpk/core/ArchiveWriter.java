@@ -0,0 +1,686 @@
+package com.connorhaigh.javavpk.core;
+
+import com.connorhaigh.javavpk.exceptions.ArchiveException;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class ArchiveWriter
+{
+	/**
+	 * Creates a new VPK archive writer for the files in a directory tree.
+	 * @param sourceDirectory the directory to pack
+	 */
+	public ArchiveWriter(File sourceDirectory)
+	{
+		this.sourceDirectory = sourceDirectory;
+
+		this.version = Archive.VERSION_TWO;
+		this.maxChunkSize = ArchiveWriter.DEFAULT_MAX_CHUNK_SIZE;
+		this.preloadThreshold = 0;
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.deduplicate = false;
+	}
+
+	/**
+	 * Writes the archive.
+	 * If the output file name contains "_dir", file data is written to size-capped child archives next to it,
+	 * otherwise it is embedded in the output file after the directory tree.
+	 * @param outputFile the directory file to write
+	 * @return the amount of entries written
+	 * @throws IOException if a file could not be read or written
+	 * @throws ArchiveException if the source files cannot be represented in an archive
+	 */
+	public int write(File outputFile) throws IOException, ArchiveException
+	{
+		//collect and checksum
+		List<PendingEntry> entries = this.collect();
+		this.checksum(entries);
+
+		//group by extension, then path, as the tree requires
+		Map<String, Map<String, List<PendingEntry>>> tree = new TreeMap<String, Map<String, List<PendingEntry>>>();
+		for (PendingEntry entry : entries)
+			tree.computeIfAbsent(entry.extension, extension -> new TreeMap<String, List<PendingEntry>>()).computeIfAbsent(entry.directory, directory -> new ArrayList<PendingEntry>()).add(entry);
+
+		boolean multiPart = outputFile.getName().contains("_dir");
+		File embeddedFile = null;
+		try
+		{
+			//write file data in tree order
+			if (multiPart)
+			{
+				this.writeChunks(tree, outputFile);
+			}
+			else
+			{
+				embeddedFile = File.createTempFile(outputFile.getName(), ".tmp", outputFile.getAbsoluteFile().getParentFile());
+				this.writeEmbedded(tree, embeddedFile);
+			}
+
+			//write directory
+			ByteBuffer treeBuffer = this.writeTree(tree);
+			this.writeDirectory(outputFile, treeBuffer, embeddedFile);
+		}
+		finally
+		{
+			if (embeddedFile != null)
+				embeddedFile.delete();
+		}
+
+		return entries.size();
+	}
+
+	/**
+	 * Collects every regular file in the source directory.
+	 * @return the pending entries, in path order
+	 * @throws IOException if the source directory could not be walked
+	 * @throws ArchiveException if a file cannot be represented in an archive
+	 */
+	private List<PendingEntry> collect() throws IOException, ArchiveException
+	{
+		Path root = this.sourceDirectory.toPath();
+
+		List<Path> files;
+		try (Stream<Path> stream = Files.walk(root))
+		{
+			files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+
+		CharsetEncoder encoder = StandardCharsets.ISO_8859_1.newEncoder();
+		List<PendingEntry> entries = new ArrayList<PendingEntry>(files.size());
+		for (Path file : files)
+		{
+			//split path
+			Path relative = root.relativize(file);
+			String fileName = relative.getFileName().toString();
+			int dot = fileName.lastIndexOf('.');
+
+			PendingEntry entry = new PendingEntry();
+			entry.source = file;
+			entry.directory = (relative.getParent() != null ? relative.getParent().toString().replace(File.separatorChar, '/') : ArchiveWriter.EMPTY_NAME);
+			entry.name = (dot >= 0 ? fileName.substring(0, dot) : fileName);
+			entry.extension = (dot >= 0 && dot < fileName.length() - 1 ? fileName.substring(dot + 1) : ArchiveWriter.EMPTY_NAME);
+			entry.size = Files.size(file);
+
+			//check limits
+			if (!encoder.canEncode(relative.toString()))
+				throw new ArchiveException("Unsupported characters in " + relative);
+			if (entry.name.isEmpty())
+				throw new ArchiveException("Empty file name " + relative);
+			if (entry.size > ArchiveWriter.MAX_ENTRY_SIZE)
+				throw new ArchiveException("File too large " + relative);
+
+			entries.add(entry);
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Computes the CRC checksum, and the content digest when deduplicating, of every pending entry in parallel.
+	 * @param entries the pending entries
+	 * @throws IOException if a file could not be read
+	 */
+	private void checksum(List<PendingEntry> entries) throws IOException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.threads));
+		try
+		{
+			List<Future<?>> futures = new ArrayList<Future<?>>(entries.size());
+			for (PendingEntry entry : entries)
+				futures.add(executor.submit(() -> ArchiveWriter.checksum(entry, this.deduplicate)));
+
+			for (Future<?> future : futures)
+				future.get();
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Checksum interrupted");
+		}
+		catch (ExecutionException exception)
+		{
+			if (exception.getCause() instanceof IOException)
+				throw (IOException) exception.getCause();
+
+			throw new IOException(exception.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes file data to size-capped child archives, starting a new child when the current one is full.
+	 * @param tree the grouped pending entries
+	 * @param outputFile the directory file the children belong to
+	 * @throws IOException if a file could not be read or written
+	 * @throws ArchiveException if the output file name is not a multi-part name, or there are too many children
+	 */
+	private void writeChunks(Map<String, Map<String, List<PendingEntry>>> tree, File outputFile) throws IOException, ArchiveException
+	{
+		//same naming as Archive.getChildArchive
+		String fileName = outputFile.getName();
+		if (!fileName.endsWith("_dir.vpk"))
+			throw new ArchiveException("Multi-part archive name must end with _dir.vpk");
+
+		File parent = outputFile.getAbsoluteFile().getParentFile();
+		String rootName = fileName.substring(0, fileName.length() - 8);
+
+		Map<ContentKey, PendingEntry> written = new HashMap<ContentKey, PendingEntry>();
+		int chunkIndex = 0;
+		long chunkSize = 0;
+		FileChannel chunk = null;
+		try
+		{
+			for (Map<String, List<PendingEntry>> directories : tree.values())
+			{
+				for (List<PendingEntry> directory : directories.values())
+				{
+					for (PendingEntry entry : directory)
+					{
+						if (this.preload(entry) || ArchiveWriter.deduplicate(entry, written))
+							continue;
+
+						//rotate full chunks
+						if (chunk != null && chunkSize > 0 && chunkSize + entry.size > this.maxChunkSize)
+						{
+							chunk.close();
+							chunk = null;
+							chunkIndex++;
+							chunkSize = 0;
+						}
+
+						if (chunk == null)
+						{
+							if (chunkIndex >= Entry.TERMINATOR)
+								throw new ArchiveException("Too many child archives");
+
+							File childFile = new File(parent, String.format("%s_%03d.vpk", rootName, chunkIndex));
+							chunk = FileChannel.open(childFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+						}
+
+						//append
+						entry.archiveIndex = (short) chunkIndex;
+						entry.offset = (int) chunkSize;
+						entry.length = (int) entry.size;
+						chunkSize += ArchiveWriter.append(entry.source, entry.size, chunk);
+						if (entry.contentKey != null)
+							written.put(entry.contentKey, entry);
+					}
+				}
+			}
+		}
+		finally
+		{
+			if (chunk != null)
+				chunk.close();
+		}
+	}
+
+	/**
+	 * Writes file data to a single temporary file, to be embedded after the directory tree.
+	 * @param tree the grouped pending entries
+	 * @param embeddedFile the temporary file
+	 * @throws IOException if a file could not be read or written
+	 * @throws ArchiveException if the embedded data is too large
+	 */
+	private void writeEmbedded(Map<String, Map<String, List<PendingEntry>>> tree, File embeddedFile) throws IOException, ArchiveException
+	{
+		try (FileChannel output = FileChannel.open(embeddedFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			Map<ContentKey, PendingEntry> written = new HashMap<ContentKey, PendingEntry>();
+			long size = 0;
+			for (Map<String, List<PendingEntry>> directories : tree.values())
+			{
+				for (List<PendingEntry> directory : directories.values())
+				{
+					for (PendingEntry entry : directory)
+					{
+						if (this.preload(entry) || ArchiveWriter.deduplicate(entry, written))
+							continue;
+
+						if (size + entry.size > ArchiveWriter.MAX_ENTRY_SIZE)
+							throw new ArchiveException("Embedded data too large");
+
+						//append
+						entry.archiveIndex = (short) Entry.TERMINATOR;
+						entry.offset = (int) size;
+						entry.length = (int) entry.size;
+						size += ArchiveWriter.append(entry.source, entry.size, output);
+						if (entry.contentKey != null)
+							written.put(entry.contentKey, entry);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inlines a small file as preload data, if it is under the preload threshold.
+	 * @param entry the pending entry
+	 * @return if the file was inlined
+	 * @throws IOException if the file could not be read
+	 */
+	private boolean preload(PendingEntry entry) throws IOException
+	{
+		if (entry.size == 0 || entry.size > Math.min(this.preloadThreshold, ArchiveWriter.MAX_PRELOAD_SIZE))
+			return false;
+
+		entry.preloadData = Files.readAllBytes(entry.source);
+		if (entry.preloadData.length != entry.size)
+			throw new IOException(entry.source + " changed while packing");
+
+		entry.archiveIndex = (short) Entry.TERMINATOR;
+		entry.offset = 0;
+		entry.length = 0;
+
+		return true;
+	}
+
+	/**
+	 * Points a pending entry at the data of an identical file that has already been written, if there is one.
+	 * @param entry the pending entry
+	 * @param written the entries already written, by content
+	 * @return if the entry was deduplicated
+	 */
+	private static boolean deduplicate(PendingEntry entry, Map<ContentKey, PendingEntry> written)
+	{
+		if (entry.contentKey == null)
+			return false;
+
+		PendingEntry original = written.get(entry.contentKey);
+		if (original == null)
+			return false;
+
+		entry.archiveIndex = original.archiveIndex;
+		entry.offset = original.offset;
+		entry.length = original.length;
+
+		return true;
+	}
+
+	/**
+	 * Encodes the directory tree.
+	 * @param tree the grouped pending entries, with their locations assigned
+	 * @return the tree buffer, flipped for reading
+	 */
+	private ByteBuffer writeTree(Map<String, Map<String, List<PendingEntry>>> tree)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(ArchiveWriter.INITIAL_TREE_SIZE);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		for (Map.Entry<String, Map<String, List<PendingEntry>>> extension : tree.entrySet())
+		{
+			buffer = ArchiveWriter.putString(buffer, extension.getKey());
+
+			for (Map.Entry<String, List<PendingEntry>> directory : extension.getValue().entrySet())
+			{
+				buffer = ArchiveWriter.putString(buffer, directory.getKey());
+
+				for (PendingEntry entry : directory.getValue())
+				{
+					int preloadSize = (entry.preloadData != null ? entry.preloadData.length : 0);
+
+					buffer = ArchiveWriter.putString(buffer, entry.name);
+					buffer = ArchiveWriter.ensureRemaining(buffer, ArchiveWriter.ENTRY_SIZE + preloadSize);
+					buffer.putInt(entry.crc);
+					buffer.putShort((short) preloadSize);
+					buffer.putShort(entry.archiveIndex);
+					buffer.putInt(entry.offset);
+					buffer.putInt(entry.length);
+					buffer.putShort(ArchiveWriter.ENTRY_TERMINATOR);
+
+					if (preloadSize > 0)
+						buffer.put(entry.preloadData);
+				}
+
+				//end of directory
+				buffer = ArchiveWriter.putString(buffer, "");
+			}
+
+			//end of extension
+			buffer = ArchiveWriter.putString(buffer, "");
+		}
+
+		//end of tree
+		buffer = ArchiveWriter.putString(buffer, "");
+		buffer.flip();
+
+		return buffer;
+	}
+
+	/**
+	 * Writes the directory file, with its header, tree and optional embedded data.
+	 * @param outputFile the directory file
+	 * @param tree the tree buffer
+	 * @param embeddedFile the embedded data, or null
+	 * @throws IOException if the file could not be written
+	 */
+	private void writeDirectory(File outputFile, ByteBuffer tree, File embeddedFile) throws IOException
+	{
+		try (FileChannel output = FileChannel.open(outputFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			long embeddedSize = (embeddedFile != null ? embeddedFile.length() : 0);
+
+			//header
+			ByteBuffer header = ByteBuffer.allocate(this.version == Archive.VERSION_ONE ? Archive.VERSION_ONE_HEADER_SIZE : Archive.VERSION_TWO_HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(Archive.SIGNATURE);
+			header.putInt(this.version);
+			header.putInt(tree.remaining());
+			if (this.version == Archive.VERSION_TWO)
+			{
+				//file data, archive checksum, other checksum and signature sections
+				header.putInt((int) embeddedSize);
+				header.putInt(0);
+				header.putInt(0);
+				header.putInt(0);
+			}
+			header.flip();
+
+			while (header.hasRemaining())
+				output.write(header);
+			while (tree.hasRemaining())
+				output.write(tree);
+
+			//embedded data
+			if (embeddedFile != null)
+			{
+				try (FileChannel input = FileChannel.open(embeddedFile.toPath(), StandardOpenOption.READ))
+				{
+					ArchiveWriter.transfer(input, embeddedSize, output);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the CRC checksum of a pending entry, and optionally its content digest, in a single pass.
+	 * @param entry the pending entry
+	 * @param digest if the content digest should be computed
+	 * @return nothing
+	 * @throws IOException if the file could not be read
+	 */
+	private static Void checksum(PendingEntry entry, boolean digest) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		MessageDigest messageDigest = (digest ? ArchiveWriter.createDigest() : null);
+		try (FileChannel input = FileChannel.open(entry.source, StandardOpenOption.READ))
+		{
+			long size = input.size();
+			for (long position = 0; position < size; position += ArchiveWriter.CHECKSUM_WINDOW_SIZE)
+			{
+				MappedByteBuffer window = input.map(FileChannel.MapMode.READ_ONLY, position, Math.min(ArchiveWriter.CHECKSUM_WINDOW_SIZE, size - position));
+				crc.update(window.duplicate());
+				if (messageDigest != null)
+					messageDigest.update(window);
+			}
+		}
+
+		entry.crc = (int) crc.getValue();
+		if (messageDigest != null)
+			entry.contentKey = new ContentKey(entry.size, messageDigest.digest());
+
+		return null;
+	}
+
+	/**
+	 * Creates the digest used to identify duplicate file contents.
+	 * @return the message digest
+	 */
+	private static MessageDigest createDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance(ArchiveWriter.DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException exception)
+		{
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	/**
+	 * Appends a whole file to a channel.
+	 * @param file the file
+	 * @param size the expected size of the file
+	 * @param output the channel to append to
+	 * @return the amount of bytes appended
+	 * @throws IOException if the file could not be read or written
+	 */
+	private static long append(Path file, long size, FileChannel output) throws IOException
+	{
+		try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			if (input.size() != size)
+				throw new IOException(file + " changed while packing");
+
+			ArchiveWriter.transfer(input, size, output);
+		}
+
+		return size;
+	}
+
+	/**
+	 * Transfers bytes from the start of one channel to the end of another.
+	 * @param input the channel to read
+	 * @param size the amount of bytes to transfer
+	 * @param output the channel to append to
+	 * @throws IOException if the transfer failed
+	 */
+	private static void transfer(FileChannel input, long size, FileChannel output) throws IOException
+	{
+		long position = 0;
+		while (position < size)
+		{
+			long transferred = input.transferTo(position, size - position, output);
+			if (transferred <= 0 && position >= input.size())
+				throw new EOFException("Unexpected end of input");
+
+			position += transferred;
+		}
+	}
+
+	/**
+	 * Writes a null-terminated string, growing the buffer if needed.
+	 * @param buffer the buffer
+	 * @param string the string
+	 * @return the buffer, or a larger copy of it
+	 */
+	private static ByteBuffer putString(ByteBuffer buffer, String string)
+	{
+		byte[] bytes = string.getBytes(StandardCharsets.ISO_8859_1);
+		buffer = ArchiveWriter.ensureRemaining(buffer, bytes.length + 1);
+		buffer.put(bytes);
+		buffer.put((byte) Archive.NULL_TERMINATOR);
+
+		return buffer;
+	}
+
+	/**
+	 * Grows a buffer so that it has at least the given amount of bytes remaining.
+	 * @param buffer the buffer
+	 * @param remaining the required amount of bytes
+	 * @return the buffer, or a larger copy of it
+	 */
+	private static ByteBuffer ensureRemaining(ByteBuffer buffer, int remaining)
+	{
+		if (buffer.remaining() >= remaining)
+			return buffer;
+
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + remaining));
+		larger.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.flip();
+		larger.put(buffer);
+
+		return larger;
+	}
+
+	/**
+	 * Sets the internal version of the archive.
+	 * @param version the internal version, 1 or 2
+	 * @throws ArchiveException if the version is not supported
+	 */
+	public void setVersion(int version) throws ArchiveException
+	{
+		if (version < Archive.MINIMUM_VERSION || version > Archive.MAXIMUM_VERSION)
+			throw new ArchiveException("Unsupported version");
+
+		this.version = version;
+	}
+
+	/**
+	 * Sets the size at which a new child archive is started.
+	 * Files larger than this are given a child archive of their own.
+	 * Entry offsets are stored as unsigned 32-bit values, so child archives are limited to 4 GiB.
+	 * @param maxChunkSize the maximum child archive size, in bytes
+	 * @throws ArchiveException if the size is not positive, or too large for entry offsets
+	 */
+	public void setMaxChunkSize(long maxChunkSize) throws ArchiveException
+	{
+		if (maxChunkSize <= 0 || maxChunkSize > ArchiveWriter.MAX_CHUNK_SIZE)
+			throw new ArchiveException("Unsupported maximum chunk size");
+
+		this.maxChunkSize = maxChunkSize;
+	}
+
+	/**
+	 * Sets the size up to which files are stored as preload data in the directory tree.
+	 * @param preloadThreshold the maximum preload size, in bytes, or 0 to disable preloading
+	 */
+	public void setPreloadThreshold(int preloadThreshold)
+	{
+		this.preloadThreshold = preloadThreshold;
+	}
+
+	/**
+	 * Sets the number of threads used to compute checksums.
+	 * @param threads the number of threads
+	 */
+	public void setThreads(int threads)
+	{
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets if identical files should share a single copy of their data.
+	 * Contents are compared by length and SHA-256 digest, computed alongside the checksums.
+	 * @param deduplicate if duplicate data should be shared
+	 */
+	public void setDeduplicate(boolean deduplicate)
+	{
+		this.deduplicate = deduplicate;
+	}
+
+	/**
+	 * Returns the directory being packed.
+	 * @return the source directory
+	 */
+	public File getSourceDirectory()
+	{
+		return this.sourceDirectory;
+	}
+
+	/**
+	 * A file waiting to be written, along with its assigned location.
+	 */
+	private static class PendingEntry
+	{
+		private Path source;
+		private String directory;
+		private String name;
+		private String extension;
+		private long size;
+
+		private int crc;
+		private short archiveIndex;
+		private int offset;
+		private int length;
+		private byte[] preloadData;
+		private ContentKey contentKey;
+	}
+
+	/**
+	 * Identifies file contents by their length and digest.
+	 */
+	private static class ContentKey
+	{
+		/**
+		 * Creates a new content key.
+		 * @param size the length of the contents
+		 * @param digest the digest of the contents
+		 */
+		private ContentKey(long size, byte[] digest)
+		{
+			this.size = size;
+			this.digest = digest;
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof ContentKey))
+				return false;
+
+			ContentKey other = (ContentKey) object;
+			return (this.size == other.size && Arrays.equals(this.digest, other.digest));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Arrays.hashCode(this.digest);
+		}
+
+		private final long size;
+		private final byte[] digest;
+	}
+
+	public static final long DEFAULT_MAX_CHUNK_SIZE = 200 * 1024 * 1024;
+
+	private static final String EMPTY_NAME = " ";
+	private static final short ENTRY_TERMINATOR = (short) 0xFFFF;
+	private static final int ENTRY_SIZE = 18;
+	private static final int INITIAL_TREE_SIZE = 64 * 1024;
+	private static final int MAX_PRELOAD_SIZE = 0xFFFF;
+	private static final long MAX_ENTRY_SIZE = 0xFFFFFFFFL;
+	private static final long MAX_CHUNK_SIZE = 0xFFFFFFFFL;
+	private static final long CHECKSUM_WINDOW_SIZE = 64 * 1024 * 1024;
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	private File sourceDirectory;
+
+	private int version;
+	private long maxChunkSize;
+	private int preloadThreshold;
+	private int threads;
+	private boolean deduplicate;
+}
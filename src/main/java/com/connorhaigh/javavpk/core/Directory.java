@@ -1,6 +1,7 @@
 package com.connorhaigh.javavpk.core;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class Directory 
 {
@@ -9,9 +10,19 @@ public class Directory
 	 * @param path the path of the directory
 	 */
 	protected Directory(String path)
+	{
+		this(path, new ArrayList<Entry>());
+	}
+
+	/**
+	 * Creates a new VPK directory backed by an existing list of entries.
+	 * @param path the path of the directory
+	 * @param entries the entries of the directory
+	 */
+	protected Directory(String path, List<Entry> entries)
 	{
 		this.path = path.trim();
-		this.entries = new ArrayList<Entry>();
+		this.entries = entries;
 	}
 	
 	/**
@@ -35,6 +46,7 @@ public class Directory
 	
 	/**
 	 * Adds an entry to this directory.
+	 * Directories of compact archives cannot be modified.
 	 * @param entry the entry
 	 */
 	public void addEntry(Entry entry)
@@ -44,6 +56,7 @@ public class Directory
 	
 	/**
 	 * Removes an entry from this directory.
+	 * Directories of compact archives cannot be modified.
 	 * @param entry the entry
 	 */
 	public void removeEntry(Entry entry)
@@ -55,7 +68,7 @@ public class Directory
 	 * Returns the list of entries in this directory.
 	 * @return the list of entries
 	 */
-	public ArrayList<Entry> getEntries()
+	public List<Entry> getEntries()
 	{
 		return this.entries;
 	}
@@ -63,5 +76,5 @@ public class Directory
 	public static final String SEPARATOR = "/";
 	
 	private String path;
-	private ArrayList<Entry> entries;
+	private List<Entry> entries;
 }
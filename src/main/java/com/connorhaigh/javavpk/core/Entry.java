@@ -1,12 +1,15 @@
 package com.connorhaigh.javavpk.core;
 
 import com.connorhaigh.javavpk.exceptions.ArchiveException;
-import com.connorhaigh.javavpk.exceptions.EntryException;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 public class Entry
 {
@@ -21,9 +24,8 @@ public class Entry
 	 * @param offset the offset of this entry
 	 * @param length the length of this entry
 	 * @param terminator the terminator to this entry
-	 * @throws EntryException if the archive is null
 	 */
-	protected Entry(Archive archive, short archiveIndex, byte[] preloadData, String filename, String extension, int crc, int offset, int length, short terminator) throws EntryException
+	protected Entry(Archive archive, short archiveIndex, byte[] preloadData, String filename, String extension, int crc, int offset, int length, short terminator)
 	{
 		this.archive = archive;
 		this.archiveIndex = archiveIndex;
@@ -41,55 +43,92 @@ public class Entry
 
 	/**
 	 * Reads and returns the raw data for this entry.
-	 * If the entry has preload data, that is returned instead.
+	 * The preload data, if any, is followed by the data stored in the child archive.
 	 * @return the raw data
 	 * @throws IOException if the entry could not be read
 	 * @throws ArchiveException if a general archive exception occurs
 	 */
 	public byte[] readData() throws IOException, ArchiveException
 	{
-		//check for preload data
-		if (this.preloadData != null)
+		//check for preload-only data
+		int preloadLength = (this.preloadData != null ? this.preloadData.length : 0);
+		if (this.preloadData != null && this.length == 0)
 			return this.preloadData;
 
-		//get target archive
-		File target = null;
+		//copy preload prefix
+		byte[] data = new byte[preloadLength + this.length];
+		if (preloadLength > 0)
+			System.arraycopy(this.preloadData, 0, data, 0, preloadLength);
 
-		if (this.archive.isMultiPart())
-			target = this.archive.getChildArchive(this.archiveIndex);
-		else
-			target = this.archive.getFile();
+		//read remainder in place
+		this.archive.read(this.archiveIndex, Integer.toUnsignedLong(this.offset), ByteBuffer.wrap(data, preloadLength, this.length));
 
-		try (FileInputStream fileInputStream = new FileInputStream(target))
-		{
-			if (this.archiveIndex == Entry.TERMINATOR)
-			{
-				//skip tree and header
-				fileInputStream.skip(this.archive.getTreeLength());
-				fileInputStream.skip(this.archive.getHeaderLength());
-			}
+		return data;
+	}
 
-			//read data
-			byte[] data = new byte[this.length];
-			fileInputStream.skip(this.offset);
-			fileInputStream.read(data, 0, this.length);
+	/**
+	 * Returns a read-only view of the raw data for this entry, without copying it off disk.
+	 * Archive data is mapped on its own, so only the range of this entry is mapped.
+	 * Entries split between preload and archive data are not contiguous, so they are read into memory instead.
+	 * @return the read-only data
+	 * @throws IOException if the entry could not be mapped
+	 * @throws ArchiveException if a general archive exception occurs
+	 */
+	public ByteBuffer mapData() throws IOException, ArchiveException
+	{
+		//check for preload-only data
+		if (this.preloadData != null && this.length == 0)
+			return ByteBuffer.wrap(this.preloadData).asReadOnlyBuffer();
 
-			return data;
-		}
+		//check for split data
+		if (this.preloadData != null)
+			return ByteBuffer.wrap(this.readData()).asReadOnlyBuffer();
+
+		return this.archive.map(this.archiveIndex, Integer.toUnsignedLong(this.offset), Integer.toUnsignedLong(this.length));
+	}
+
+	/**
+	 * Opens a read-only channel over the data of this entry, without reading it into memory.
+	 * The channel presents the preload data, if any, followed by the data stored in the child archive.
+	 * @return the channel
+	 */
+	public SeekableByteChannel openChannel()
+	{
+		return new EntryChannel(this.archive, this.archiveIndex, this.preloadData, Integer.toUnsignedLong(this.offset), Integer.toUnsignedLong(this.length));
+	}
+
+	/**
+	 * Opens a stream over the data of this entry, without reading it into memory.
+	 * @return the stream
+	 * @see #openChannel()
+	 */
+	public InputStream openStream()
+	{
+		return Channels.newInputStream(this.openChannel());
 	}
 
 	/**
 	 * Extracts the data from this entry to the specified file.
+	 * Archive data is transferred directly between channels, without copying through the heap.
 	 * @param file the file to extract to
 	 * @throws IOException if the entry could not be read
 	 * @throws ArchiveException if a general archive exception occurs
 	 */
 	public void extract(File file) throws IOException, ArchiveException
 	{
-		try (FileOutputStream fileOutputStream = new FileOutputStream(file))
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
 		{
-			//write
-			fileOutputStream.write(this.readData());
+			//write preload prefix
+			if (this.preloadData != null)
+			{
+				ByteBuffer preload = ByteBuffer.wrap(this.preloadData);
+				while (preload.hasRemaining())
+					fileChannel.write(preload);
+			}
+
+			//transfer remainder
+			if (this.length != 0)
+				this.archive.transfer(this.archiveIndex, Integer.toUnsignedLong(this.offset), Integer.toUnsignedLong(this.length), fileChannel);
 		}
 	}
 
@@ -111,6 +150,15 @@ public class Entry
 		return this.archiveIndex;
 	}
 
+	/**
+	 * Returns the preload data stored in the directory tree for this entry.
+	 * @return the preload data, or null
+	 */
+	byte[] getPreloadData()
+	{
+		return this.preloadData;
+	}
+
 	/**
 	 * Returns the file name of this entry.
 	 * @return the file name
@@ -0,0 +1,170 @@
+package com.connorhaigh.javavpk.core;
+
+import com.connorhaigh.javavpk.exceptions.ArchiveException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+public class EntryChannel implements SeekableByteChannel
+{
+	/**
+	 * Creates a new read-only channel over the data of an entry.
+	 * The channel presents the preload data, if any, followed by the data stored in the child archive.
+	 * @param archive the parent archive of the entry
+	 * @param archiveIndex the archive index of the entry
+	 * @param preloadData the preload data of the entry, or null
+	 * @param offset the offset of the entry in the child archive
+	 * @param length the length of the entry in the child archive
+	 */
+	protected EntryChannel(Archive archive, int archiveIndex, byte[] preloadData, long offset, long length)
+	{
+		this.archive = archive;
+		this.archiveIndex = archiveIndex;
+
+		this.preloadData = (preloadData != null ? preloadData : EntryChannel.EMPTY);
+		this.offset = offset;
+		this.size = this.preloadData.length + length;
+
+		this.position = 0;
+		this.open = true;
+	}
+
+	/**
+	 * Reads a sequence of bytes from this channel.
+	 * Archive data is read positionally from the shared child archive channel.
+	 * @param destination the buffer to read into
+	 * @return the amount of bytes read, or -1 at the end of the entry
+	 * @throws IOException if the entry could not be read
+	 */
+	@Override
+	public int read(ByteBuffer destination) throws IOException
+	{
+		this.ensureOpen();
+		if (this.position >= this.size)
+			return -1;
+
+		int count = (int) Math.min(destination.remaining(), this.size - this.position);
+		if (count == 0)
+			return 0;
+
+		if (this.position < this.preloadData.length)
+		{
+			//read preload data
+			count = Math.min(count, this.preloadData.length - (int) this.position);
+			destination.put(this.preloadData, (int) this.position, count);
+		}
+		else
+		{
+			//read archive data, bounded to the entry
+			ByteBuffer bounded = destination.duplicate();
+			bounded.limit(bounded.position() + count);
+
+			long archivePosition = this.offset + (this.position - this.preloadData.length);
+			try
+			{
+				count = this.archive.readAvailable(this.archiveIndex, archivePosition, bounded);
+			}
+			catch (ArchiveException exception)
+			{
+				throw new IOException(exception);
+			}
+
+			if (count < 0)
+				throw new EOFException("Unexpected end of archive data");
+
+			destination.position(destination.position() + count);
+		}
+
+		this.position += count;
+		return count;
+	}
+
+	/**
+	 * Entry channels are read-only.
+	 * @param source the buffer to write
+	 * @return never
+	 */
+	@Override
+	public int write(ByteBuffer source)
+	{
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public long position() throws IOException
+	{
+		this.ensureOpen();
+		return this.position;
+	}
+
+	@Override
+	public SeekableByteChannel position(long newPosition) throws IOException
+	{
+		this.ensureOpen();
+		if (newPosition < 0)
+			throw new IllegalArgumentException("Negative position");
+
+		this.position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException
+	{
+		this.ensureOpen();
+		return this.size;
+	}
+
+	/**
+	 * Entry channels are read-only.
+	 * @param size the new size
+	 * @return never
+	 */
+	@Override
+	public SeekableByteChannel truncate(long size)
+	{
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return this.open;
+	}
+
+	/**
+	 * Closes this channel.
+	 * The shared child archive channel stays open until the archive is closed.
+	 */
+	@Override
+	public void close()
+	{
+		this.open = false;
+	}
+
+	/**
+	 * Checks that this channel is still open.
+	 * @throws ClosedChannelException if this channel is closed
+	 */
+	private void ensureOpen() throws ClosedChannelException
+	{
+		if (!this.open)
+			throw new ClosedChannelException();
+	}
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final Archive archive;
+	private final int archiveIndex;
+
+	private final byte[] preloadData;
+	private final long offset;
+	private final long size;
+
+	private long position;
+	private volatile boolean open;
+}
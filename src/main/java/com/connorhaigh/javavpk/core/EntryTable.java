@@ -0,0 +1,886 @@
+package com.connorhaigh.javavpk.core;
+
+import com.connorhaigh.javavpk.exceptions.ArchiveException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+class EntryTable
+{
+	/**
+	 * Creates a new entry table from its columns.
+	 * @param stringData the bytes of every pooled string, back to back
+	 * @param stringOffsets the start of each pooled string, followed by the end of the last one
+	 * @param directoryPaths the path string of each directory
+	 * @param directoryExtensions the extension string of each directory
+	 * @param directoryStarts the first entry of each directory, followed by the entry count
+	 * @param entryDirectories the directory of each entry
+	 * @param entryNames the file name string of each entry
+	 * @param crcs the CRC checksum of each entry
+	 * @param archiveIndices the child archive index of each entry
+	 * @param offsets the offset of each entry
+	 * @param lengths the length of each entry
+	 * @param terminators the terminator of each entry
+	 * @param preloadOffsets the start of each entry's preload data, followed by the end of the last one
+	 * @param preloadData the preload data of every entry, back to back
+	 * @param stringSlots the string lookup table, or null to build it
+	 * @param entrySlots the entry lookup table, or null to build it
+	 */
+	EntryTable(byte[] stringData, int[] stringOffsets, int[] directoryPaths, int[] directoryExtensions, int[] directoryStarts, int[] entryDirectories, int[] entryNames, int[] crcs, short[] archiveIndices, int[] offsets, int[] lengths, short[] terminators, int[] preloadOffsets, byte[] preloadData, int[] stringSlots, int[] entrySlots)
+	{
+		this.stringData = stringData;
+		this.stringOffsets = stringOffsets;
+
+		this.directoryPaths = directoryPaths;
+		this.directoryExtensions = directoryExtensions;
+		this.directoryStarts = directoryStarts;
+
+		this.entryDirectories = entryDirectories;
+		this.entryNames = entryNames;
+		this.crcs = crcs;
+		this.archiveIndices = archiveIndices;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		this.terminators = terminators;
+		this.preloadOffsets = preloadOffsets;
+		this.preloadData = preloadData;
+
+		//build missing lookup tables
+		this.stringSlots = stringSlots;
+		if (this.stringSlots == null)
+		{
+			this.stringSlots = new int[EntryTable.tableSize(this.getStringCount())];
+			for (int string = 0; string < this.getStringCount(); string++)
+				this.insertString(string);
+		}
+
+		this.entrySlots = entrySlots;
+		if (this.entrySlots == null)
+		{
+			this.entrySlots = new int[EntryTable.tableSize(entryNames.length)];
+			for (int entry = 0; entry < entryNames.length; entry++)
+				this.insertEntry(entry);
+		}
+	}
+
+	/**
+	 * Decodes a directory tree into a new entry table.
+	 * Strings are pooled straight from the tree bytes, without creating intermediate objects.
+	 * @param tree the little-endian tree buffer, positioned at its start
+	 * @return the entry table
+	 * @throws ArchiveException if the tree is malformed
+	 */
+	static EntryTable read(ByteBuffer tree) throws ArchiveException
+	{
+		Builder builder = new Builder();
+
+		while (tree.hasRemaining())
+		{
+			//get extension
+			int extension = builder.readString(tree);
+			if (extension < 0)
+				break;
+
+			while (true)
+			{
+				//get path
+				int path = builder.readString(tree);
+				if (path < 0)
+					break;
+
+				//directory
+				builder.addDirectory(path, extension);
+
+				while (true)
+				{
+					//get filename
+					int filename = builder.readString(tree);
+					if (filename < 0)
+						break;
+
+					//read data
+					int crc = tree.getInt();
+					int preloadSize = Short.toUnsignedInt(tree.getShort());
+					short archiveIndex = tree.getShort();
+					int entryOffset = tree.getInt();
+					int entryLength = tree.getInt();
+					short terminator = tree.getShort();
+
+					//create entry
+					builder.addEntry(filename, crc, archiveIndex, entryOffset, entryLength, terminator, tree, preloadSize);
+				}
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Reads an entry table previously written with {@link #serialize(ByteBuffer)}, including its lookup tables.
+	 * @param buffer the little-endian buffer, positioned at the table
+	 * @return the entry table
+	 * @throws ArchiveException if the table is malformed
+	 */
+	static EntryTable deserialize(ByteBuffer buffer) throws ArchiveException
+	{
+		EntryTable table;
+		try
+		{
+			table = new EntryTable(
+				EntryTable.getBytes(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getShorts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getShorts(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getBytes(buffer),
+				EntryTable.getInts(buffer),
+				EntryTable.getInts(buffer)
+			);
+		}
+		catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException exception)
+		{
+			throw new ArchiveException("Truncated entry table");
+		}
+
+		//string offsets end with the end of the last string
+		if (table.stringOffsets.length == 0)
+			throw new ArchiveException("Truncated entry table");
+
+		//lookup tables must be powers of two with at least one free slot
+		if (Integer.bitCount(table.stringSlots.length) != 1 || table.stringSlots.length <= table.getStringCount())
+			throw new ArchiveException("Invalid string lookup table");
+		if (Integer.bitCount(table.entrySlots.length) != 1 || table.entrySlots.length <= table.entryNames.length)
+			throw new ArchiveException("Invalid entry lookup table");
+
+		return table;
+	}
+
+	/**
+	 * Writes this table, including its lookup tables.
+	 * @param buffer the little-endian buffer to write to, with at least {@link #getSerializedSize()} bytes remaining
+	 */
+	void serialize(ByteBuffer buffer)
+	{
+		EntryTable.putBytes(buffer, this.stringData);
+		EntryTable.putInts(buffer, this.stringOffsets);
+		EntryTable.putInts(buffer, this.directoryPaths);
+		EntryTable.putInts(buffer, this.directoryExtensions);
+		EntryTable.putInts(buffer, this.directoryStarts);
+		EntryTable.putInts(buffer, this.entryDirectories);
+		EntryTable.putInts(buffer, this.entryNames);
+		EntryTable.putInts(buffer, this.crcs);
+		EntryTable.putShorts(buffer, this.archiveIndices);
+		EntryTable.putInts(buffer, this.offsets);
+		EntryTable.putInts(buffer, this.lengths);
+		EntryTable.putShorts(buffer, this.terminators);
+		EntryTable.putInts(buffer, this.preloadOffsets);
+		EntryTable.putBytes(buffer, this.preloadData);
+		EntryTable.putInts(buffer, this.stringSlots);
+		EntryTable.putInts(buffer, this.entrySlots);
+	}
+
+	/**
+	 * Returns the amount of bytes {@link #serialize(ByteBuffer)} will write.
+	 * @return the serialized size, in bytes
+	 */
+	long getSerializedSize()
+	{
+		long ints = this.stringOffsets.length + this.directoryPaths.length + this.directoryExtensions.length + this.directoryStarts.length
+			+ this.entryDirectories.length + this.entryNames.length + this.crcs.length + this.offsets.length + this.lengths.length
+			+ this.preloadOffsets.length + this.stringSlots.length + this.entrySlots.length;
+		long shorts = this.archiveIndices.length + this.terminators.length;
+		long bytes = this.stringData.length + this.preloadData.length;
+
+		return (16 * 4 + ints * 4 + shorts * 2 + bytes);
+	}
+
+	/**
+	 * Creates the directory views for this table.
+	 * @param archive the archive the entries belong to
+	 * @return the list of directories
+	 */
+	ArrayList<Directory> createDirectories(Archive archive)
+	{
+		ArrayList<Directory> directories = new ArrayList<Directory>(this.directoryPaths.length);
+		for (int directory = 0; directory < this.directoryPaths.length; directory++)
+		{
+			List<Entry> entries = new DirectoryEntries(this, archive, this.directoryStarts[directory], this.directoryStarts[directory + 1]);
+			directories.add(new Directory(this.getString(this.directoryPaths[directory]), entries));
+		}
+
+		return directories;
+	}
+
+	/**
+	 * Visits the names of every entry in this table, without creating entries.
+	 * @param visitor the visitor
+	 */
+	void visitEntries(EntryVisitor visitor)
+	{
+		for (int directory = 0; directory < this.directoryPaths.length; directory++)
+		{
+			String path = this.getString(this.directoryPaths[directory]);
+			String extension = this.getString(this.directoryExtensions[directory]);
+
+			for (int entry = this.directoryStarts[directory]; entry < this.directoryStarts[directory + 1]; entry++)
+				visitor.visit(path, this.getString(this.entryNames[entry]), extension);
+		}
+	}
+
+	/**
+	 * Creates an entry view for a row of this table.
+	 * @param archive the archive the entry belongs to
+	 * @param entry the row of the entry
+	 * @return the entry
+	 */
+	Entry getEntry(Archive archive, int entry)
+	{
+		//copy preload data
+		byte[] preload = null;
+		int preloadStart = this.preloadOffsets[entry];
+		int preloadEnd = this.preloadOffsets[entry + 1];
+		if (preloadEnd > preloadStart)
+			preload = Arrays.copyOfRange(this.preloadData, preloadStart, preloadEnd);
+
+		String filename = this.getString(this.entryNames[entry]);
+		String extension = this.getString(this.directoryExtensions[this.entryDirectories[entry]]);
+
+		return new Entry(archive, this.archiveIndices[entry], preload, filename, extension, this.crcs[entry], this.offsets[entry], this.lengths[entry], this.terminators[entry]);
+	}
+
+	/**
+	 * Finds the row of an entry by its directory, file name and extension.
+	 * @param directory the directory path
+	 * @param name the file name, without extension
+	 * @param extension the extension
+	 * @return the row of the entry, or -1
+	 */
+	int find(String directory, String name, String extension)
+	{
+		//resolve strings, any missing string means a missing entry
+		int path = this.findString(directory);
+		int filename = this.findString(name);
+		int type = this.findString(extension);
+		if (path < 0 || filename < 0 || type < 0)
+			return -1;
+
+		int mask = this.entrySlots.length - 1;
+		for (int slot = EntryTable.hash(path, filename, type) & mask; ; slot = (slot + 1) & mask)
+		{
+			int entry = this.entrySlots[slot] - 1;
+			if (entry < 0)
+				return -1;
+
+			if (this.entryNames[entry] == filename && this.pathOf(entry) == path && this.extensionOf(entry) == type)
+				return entry;
+		}
+	}
+
+	/**
+	 * Decodes a pooled string.
+	 * Decoded strings are not kept, so the table only ever holds the encoded bytes.
+	 * @param string the string index
+	 * @return the string
+	 */
+	String getString(int string)
+	{
+		int start = this.stringOffsets[string];
+		return new String(this.stringData, start, this.stringOffsets[string + 1] - start, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Returns the number of pooled strings in this table.
+	 * @return the number of strings
+	 */
+	int getStringCount()
+	{
+		return (this.stringOffsets.length - 1);
+	}
+
+	/**
+	 * Returns the number of entries in this table.
+	 * @return the number of entries
+	 */
+	int getEntryCount()
+	{
+		return this.entryNames.length;
+	}
+
+	/**
+	 * Finds a pooled string equal to the given string.
+	 * @param value the string to find
+	 * @return the string index, or -1
+	 */
+	private int findString(String value)
+	{
+		//hash, rejecting characters the pool cannot hold
+		int hash = 0;
+		for (int index = 0; index < value.length(); index++)
+		{
+			char character = value.charAt(index);
+			if (character > 0xFF)
+				return -1;
+
+			hash = 31 * hash + character;
+		}
+
+		int mask = this.stringSlots.length - 1;
+		for (int slot = EntryTable.mix(hash) & mask; ; slot = (slot + 1) & mask)
+		{
+			int string = this.stringSlots[slot] - 1;
+			if (string < 0)
+				return -1;
+
+			if (this.stringEquals(string, value))
+				return string;
+		}
+	}
+
+	/**
+	 * Checks if a pooled string is equal to the given string.
+	 * @param string the string index
+	 * @param value the string to compare to
+	 * @return if the strings are equal
+	 */
+	private boolean stringEquals(int string, String value)
+	{
+		int start = this.stringOffsets[string];
+		int length = this.stringOffsets[string + 1] - start;
+		if (length != value.length())
+			return false;
+
+		for (int index = 0; index < length; index++)
+		{
+			if ((this.stringData[start + index] & 0xFF) != value.charAt(index))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Inserts a pooled string into the string lookup table.
+	 * @param string the string index
+	 */
+	private void insertString(int string)
+	{
+		int mask = this.stringSlots.length - 1;
+		int slot = EntryTable.hash(this.stringData, this.stringOffsets[string], this.stringOffsets[string + 1]) & mask;
+		while (this.stringSlots[slot] != 0)
+			slot = (slot + 1) & mask;
+
+		this.stringSlots[slot] = string + 1;
+	}
+
+	/**
+	 * Inserts an entry into the entry lookup table, unless an entry with the same path already exists.
+	 * @param entry the row of the entry
+	 */
+	private void insertEntry(int entry)
+	{
+		int path = this.pathOf(entry);
+		int filename = this.entryNames[entry];
+		int type = this.extensionOf(entry);
+
+		int mask = this.entrySlots.length - 1;
+		int slot = EntryTable.hash(path, filename, type) & mask;
+		while (this.entrySlots[slot] != 0)
+		{
+			//first occurrence wins
+			int existing = this.entrySlots[slot] - 1;
+			if (this.entryNames[existing] == filename && this.pathOf(existing) == path && this.extensionOf(existing) == type)
+				return;
+
+			slot = (slot + 1) & mask;
+		}
+
+		this.entrySlots[slot] = entry + 1;
+	}
+
+	/**
+	 * Returns the path string of an entry.
+	 * @param entry the row of the entry
+	 * @return the string index
+	 */
+	private int pathOf(int entry)
+	{
+		return this.directoryPaths[this.entryDirectories[entry]];
+	}
+
+	/**
+	 * Returns the extension string of an entry.
+	 * @param entry the row of the entry
+	 * @return the string index
+	 */
+	private int extensionOf(int entry)
+	{
+		return this.directoryExtensions[this.entryDirectories[entry]];
+	}
+
+	/**
+	 * Returns the size of an open-addressing table for the given number of elements.
+	 * @param count the number of elements
+	 * @return a power of two at least twice the number of elements
+	 */
+	private static int tableSize(int count)
+	{
+		return Math.max(2, Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1);
+	}
+
+	/**
+	 * Reads a length-prefixed byte array.
+	 * @param buffer the buffer to read
+	 * @return the array
+	 */
+	private static byte[] getBytes(ByteBuffer buffer)
+	{
+		byte[] array = new byte[buffer.getInt()];
+		buffer.get(array);
+
+		return array;
+	}
+
+	/**
+	 * Reads a length-prefixed int array.
+	 * @param buffer the buffer to read
+	 * @return the array
+	 */
+	private static int[] getInts(ByteBuffer buffer)
+	{
+		int[] array = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(array);
+		buffer.position(buffer.position() + array.length * 4);
+
+		return array;
+	}
+
+	/**
+	 * Reads a length-prefixed short array.
+	 * @param buffer the buffer to read
+	 * @return the array
+	 */
+	private static short[] getShorts(ByteBuffer buffer)
+	{
+		short[] array = new short[buffer.getInt()];
+		buffer.asShortBuffer().get(array);
+		buffer.position(buffer.position() + array.length * 2);
+
+		return array;
+	}
+
+	/**
+	 * Writes a length-prefixed byte array.
+	 * @param buffer the buffer to write to
+	 * @param array the array
+	 */
+	private static void putBytes(ByteBuffer buffer, byte[] array)
+	{
+		buffer.putInt(array.length);
+		buffer.put(array);
+	}
+
+	/**
+	 * Writes a length-prefixed int array.
+	 * @param buffer the buffer to write to
+	 * @param array the array
+	 */
+	private static void putInts(ByteBuffer buffer, int[] array)
+	{
+		buffer.putInt(array.length);
+		buffer.asIntBuffer().put(array);
+		buffer.position(buffer.position() + array.length * 4);
+	}
+
+	/**
+	 * Writes a length-prefixed short array.
+	 * @param buffer the buffer to write to
+	 * @param array the array
+	 */
+	private static void putShorts(ByteBuffer buffer, short[] array)
+	{
+		buffer.putInt(array.length);
+		buffer.asShortBuffer().put(array);
+		buffer.position(buffer.position() + array.length * 2);
+	}
+
+	/**
+	 * Hashes a range of bytes the same way {@link #findString(String)} hashes characters.
+	 * @param data the bytes
+	 * @param start the start of the range, inclusive
+	 * @param end the end of the range, exclusive
+	 * @return the hash
+	 */
+	private static int hash(byte[] data, int start, int end)
+	{
+		int hash = 0;
+		for (int index = start; index < end; index++)
+			hash = 31 * hash + (data[index] & 0xFF);
+
+		return EntryTable.mix(hash);
+	}
+
+	/**
+	 * Hashes the pooled strings that identify an entry.
+	 * @param path the path string
+	 * @param filename the file name string
+	 * @param extension the extension string
+	 * @return the hash
+	 */
+	private static int hash(int path, int filename, int extension)
+	{
+		return EntryTable.mix((path * 31 + filename) * 31 + extension);
+	}
+
+	/**
+	 * Spreads the bits of a hash so that the low bits are usable as a table index.
+	 * @param hash the hash
+	 * @return the mixed hash
+	 */
+	private static int mix(int hash)
+	{
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * A list of entry views over a contiguous range of rows.
+	 */
+	private static class DirectoryEntries extends AbstractList<Entry> implements RandomAccess
+	{
+		/**
+		 * Creates a new entry list view.
+		 * @param table the table to view
+		 * @param archive the archive the entries belong to
+		 * @param start the first row, inclusive
+		 * @param end the last row, exclusive
+		 */
+		public DirectoryEntries(EntryTable table, Archive archive, int start, int end)
+		{
+			this.table = table;
+			this.archive = archive;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Entry get(int index)
+		{
+			if (index < 0 || index >= this.size())
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+
+			return this.table.getEntry(this.archive, this.start + index);
+		}
+
+		@Override
+		public int size()
+		{
+			return this.end - this.start;
+		}
+
+		private final EntryTable table;
+		private final Archive archive;
+		private final int start;
+		private final int end;
+	}
+
+	/**
+	 * Accumulates the columns of an entry table while a tree is decoded.
+	 */
+	private static class Builder
+	{
+		/**
+		 * Reads a null-terminated string from a tree and pools it, trimmed.
+		 * @param tree the tree buffer
+		 * @return the string index, or -1 if the string was empty
+		 * @throws ArchiveException if the string is not terminated
+		 */
+		public int readString(ByteBuffer tree) throws ArchiveException
+		{
+			//find terminator
+			int start = tree.position();
+			int end = start;
+			int limit = tree.limit();
+			while (end < limit && tree.get(end) != Archive.NULL_TERMINATOR)
+				end++;
+
+			if (end >= limit)
+				throw new ArchiveException("Unterminated string in directory tree");
+
+			int length = end - start;
+			if (length == 0)
+			{
+				tree.get();
+				return -1;
+			}
+
+			//copy into scratch
+			if (length > this.scratch.length)
+				this.scratch = new byte[Integer.highestOneBit(length) << 1];
+			tree.get(this.scratch, 0, length);
+			tree.get();
+
+			//trim
+			int first = 0;
+			int last = length;
+			while (first < last && (this.scratch[first] & 0xFF) <= ' ')
+				first++;
+			while (last > first && (this.scratch[last - 1] & 0xFF) <= ' ')
+				last--;
+
+			return this.intern(first, last);
+		}
+
+		/**
+		 * Starts a new directory.
+		 * @param path the path string
+		 * @param extension the extension string
+		 */
+		public void addDirectory(int path, int extension)
+		{
+			if (this.directoryCount == this.directoryPaths.length)
+			{
+				int capacity = this.directoryCount * 2;
+				this.directoryPaths = Arrays.copyOf(this.directoryPaths, capacity);
+				this.directoryExtensions = Arrays.copyOf(this.directoryExtensions, capacity);
+				this.directoryStarts = Arrays.copyOf(this.directoryStarts, capacity + 1);
+			}
+
+			this.directoryPaths[this.directoryCount] = path;
+			this.directoryExtensions[this.directoryCount] = extension;
+			this.directoryStarts[this.directoryCount] = this.entryCount;
+			this.directoryCount++;
+		}
+
+		/**
+		 * Adds an entry to the current directory, copying its preload data from the tree.
+		 * @param filename the file name string
+		 * @param crc the CRC checksum
+		 * @param archiveIndex the child archive index
+		 * @param offset the offset
+		 * @param length the length
+		 * @param terminator the terminator
+		 * @param tree the tree buffer, positioned at the preload data
+		 * @param preloadSize the size of the preload data
+		 */
+		public void addEntry(int filename, int crc, short archiveIndex, int offset, int length, short terminator, ByteBuffer tree, int preloadSize)
+		{
+			if (this.entryCount == this.entryNames.length)
+			{
+				int capacity = this.entryCount * 2;
+				this.entryDirectories = Arrays.copyOf(this.entryDirectories, capacity);
+				this.entryNames = Arrays.copyOf(this.entryNames, capacity);
+				this.crcs = Arrays.copyOf(this.crcs, capacity);
+				this.archiveIndices = Arrays.copyOf(this.archiveIndices, capacity);
+				this.offsets = Arrays.copyOf(this.offsets, capacity);
+				this.lengths = Arrays.copyOf(this.lengths, capacity);
+				this.terminators = Arrays.copyOf(this.terminators, capacity);
+				this.preloadOffsets = Arrays.copyOf(this.preloadOffsets, capacity + 1);
+			}
+
+			this.entryDirectories[this.entryCount] = this.directoryCount - 1;
+			this.entryNames[this.entryCount] = filename;
+			this.crcs[this.entryCount] = crc;
+			this.archiveIndices[this.entryCount] = archiveIndex;
+			this.offsets[this.entryCount] = offset;
+			this.lengths[this.entryCount] = length;
+			this.terminators[this.entryCount] = terminator;
+
+			//copy preload data
+			this.preloadOffsets[this.entryCount] = this.preloadLength;
+			if (preloadSize > 0)
+			{
+				this.preloadData = Builder.ensureCapacity(this.preloadData, this.preloadLength + preloadSize);
+				tree.get(this.preloadData, this.preloadLength, preloadSize);
+				this.preloadLength += preloadSize;
+			}
+
+			this.entryCount++;
+		}
+
+		/**
+		 * Finishes building, trimming every column to size.
+		 * @return the entry table
+		 */
+		public EntryTable build()
+		{
+			int[] directoryStarts = Arrays.copyOf(this.directoryStarts, this.directoryCount + 1);
+			directoryStarts[this.directoryCount] = this.entryCount;
+
+			int[] preloadOffsets = Arrays.copyOf(this.preloadOffsets, this.entryCount + 1);
+			preloadOffsets[this.entryCount] = this.preloadLength;
+
+			return new EntryTable(
+				Arrays.copyOf(this.stringData, this.stringOffsets[this.stringCount]),
+				Arrays.copyOf(this.stringOffsets, this.stringCount + 1),
+				Arrays.copyOf(this.directoryPaths, this.directoryCount),
+				Arrays.copyOf(this.directoryExtensions, this.directoryCount),
+				directoryStarts,
+				Arrays.copyOf(this.entryDirectories, this.entryCount),
+				Arrays.copyOf(this.entryNames, this.entryCount),
+				Arrays.copyOf(this.crcs, this.entryCount),
+				Arrays.copyOf(this.archiveIndices, this.entryCount),
+				Arrays.copyOf(this.offsets, this.entryCount),
+				Arrays.copyOf(this.lengths, this.entryCount),
+				Arrays.copyOf(this.terminators, this.entryCount),
+				preloadOffsets,
+				Arrays.copyOf(this.preloadData, this.preloadLength),
+				null,
+				null
+			);
+		}
+
+		/**
+		 * Pools a range of the scratch space, reusing an existing equal string.
+		 * @param start the start of the range, inclusive
+		 * @param end the end of the range, exclusive
+		 * @return the string index
+		 */
+		private int intern(int start, int end)
+		{
+			int length = end - start;
+			int mask = this.stringSlots.length - 1;
+			int slot = EntryTable.hash(this.scratch, start, end) & mask;
+
+			while (this.stringSlots[slot] != 0)
+			{
+				//compare against existing string
+				int string = this.stringSlots[slot] - 1;
+				if (this.stringEquals(string, start, length))
+					return string;
+
+				slot = (slot + 1) & mask;
+			}
+
+			//append new string
+			int string = this.stringCount++;
+			int offset = this.stringOffsets[string];
+			this.stringData = Builder.ensureCapacity(this.stringData, offset + length);
+			System.arraycopy(this.scratch, start, this.stringData, offset, length);
+
+			if (this.stringCount + 1 > this.stringOffsets.length)
+				this.stringOffsets = Arrays.copyOf(this.stringOffsets, this.stringOffsets.length * 2);
+			this.stringOffsets[this.stringCount] = offset + length;
+			this.stringSlots[slot] = string + 1;
+
+			//grow at half load
+			if (this.stringCount * 2 > this.stringSlots.length)
+				this.rehash();
+
+			return string;
+		}
+
+		/**
+		 * Checks if a pooled string is equal to a range of the scratch space.
+		 * @param string the string index
+		 * @param start the start of the range
+		 * @param length the length of the range
+		 * @return if the strings are equal
+		 */
+		private boolean stringEquals(int string, int start, int length)
+		{
+			int existing = this.stringOffsets[string];
+			if (this.stringOffsets[string + 1] - existing != length)
+				return false;
+
+			for (int index = 0; index < length; index++)
+			{
+				if (this.stringData[existing + index] != this.scratch[start + index])
+					return false;
+			}
+
+			return true;
+		}
+
+		/**
+		 * Doubles the string lookup table.
+		 */
+		private void rehash()
+		{
+			this.stringSlots = new int[this.stringSlots.length * 2];
+			int mask = this.stringSlots.length - 1;
+			for (int string = 0; string < this.stringCount; string++)
+			{
+				int slot = EntryTable.hash(this.stringData, this.stringOffsets[string], this.stringOffsets[string + 1]) & mask;
+				while (this.stringSlots[slot] != 0)
+					slot = (slot + 1) & mask;
+
+				this.stringSlots[slot] = string + 1;
+			}
+		}
+
+		/**
+		 * Grows an array to at least the given capacity.
+		 * @param array the array
+		 * @param capacity the required capacity
+		 * @return the array, or a larger copy of it
+		 */
+		private static byte[] ensureCapacity(byte[] array, int capacity)
+		{
+			if (capacity <= array.length)
+				return array;
+
+			return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+		}
+
+		private byte[] scratch = new byte[Builder.INITIAL_CAPACITY];
+
+		private byte[] stringData = new byte[Builder.INITIAL_CAPACITY];
+		private int[] stringOffsets = new int[Builder.INITIAL_CAPACITY];
+		private int[] stringSlots = new int[Builder.INITIAL_CAPACITY];
+		private int stringCount = 0;
+
+		private int[] directoryPaths = new int[Builder.INITIAL_CAPACITY];
+		private int[] directoryExtensions = new int[Builder.INITIAL_CAPACITY];
+		private int[] directoryStarts = new int[Builder.INITIAL_CAPACITY + 1];
+		private int directoryCount = 0;
+
+		private int[] entryDirectories = new int[Builder.INITIAL_CAPACITY];
+		private int[] entryNames = new int[Builder.INITIAL_CAPACITY];
+		private int[] crcs = new int[Builder.INITIAL_CAPACITY];
+		private short[] archiveIndices = new short[Builder.INITIAL_CAPACITY];
+		private int[] offsets = new int[Builder.INITIAL_CAPACITY];
+		private int[] lengths = new int[Builder.INITIAL_CAPACITY];
+		private short[] terminators = new short[Builder.INITIAL_CAPACITY];
+		private int[] preloadOffsets = new int[Builder.INITIAL_CAPACITY + 1];
+		private int entryCount = 0;
+
+		private byte[] preloadData = new byte[Builder.INITIAL_CAPACITY];
+		private int preloadLength = 0;
+
+		private static final int INITIAL_CAPACITY = 256;
+	}
+
+	private final byte[] stringData;
+	private final int[] stringOffsets;
+	private int[] stringSlots;
+
+	private final int[] directoryPaths;
+	private final int[] directoryExtensions;
+	private final int[] directoryStarts;
+
+	private final int[] entryDirectories;
+	private final int[] entryNames;
+	private final int[] crcs;
+	private final short[] archiveIndices;
+	private final int[] offsets;
+	private final int[] lengths;
+	private final short[] terminators;
+	private final int[] preloadOffsets;
+	private final byte[] preloadData;
+
+	private int[] entrySlots;
+}
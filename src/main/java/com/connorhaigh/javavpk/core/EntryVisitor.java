@@ -0,0 +1,12 @@
+package com.connorhaigh.javavpk.core;
+
+public interface EntryVisitor
+{
+	/**
+	 * Visits the name of an entry.
+	 * @param directory the directory path
+	 * @param name the file name, without extension
+	 * @param extension the extension
+	 */
+	public void visit(String directory, String name, String extension);
+}
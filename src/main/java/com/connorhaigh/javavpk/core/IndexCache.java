@@ -0,0 +1,253 @@
+package com.connorhaigh.javavpk.core;
+
+import com.connorhaigh.javavpk.exceptions.ArchiveException;
+import com.connorhaigh.javavpk.exceptions.EntryException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+public class IndexCache
+{
+	/**
+	 * Creates a new on-disk cache of compact archive indices.
+	 * @param directory the directory to keep cache files in
+	 */
+	public IndexCache(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads a compact archive, reusing its cached entry table if the archive file has not changed.
+	 * Cache entries are keyed by the absolute path, size and modification time of the archive file.
+	 * Any problem with the cache itself is ignored, and the archive is loaded normally instead.
+	 * @param file the archive file
+	 * @return the loaded archive
+	 * @throws IOException if the archive could not be read
+	 * @throws ArchiveException if a general archive exception occurs
+	 * @throws EntryException if a general entry exception occurs
+	 */
+	public Archive load(File file) throws IOException, ArchiveException, EntryException
+	{
+		Archive archive = new Archive(file);
+
+		//key
+		String path = file.getAbsolutePath();
+		long size = file.length();
+		long modified = file.lastModified();
+		File cacheFile = new File(this.directory, IndexCache.getCacheName(path));
+
+		//hit
+		if (this.read(archive, cacheFile, path, size, modified))
+			return archive;
+
+		//miss
+		archive.load(true);
+		this.write(archive, cacheFile, path, size, modified);
+
+		return archive;
+	}
+
+	/**
+	 * Loads a compact archive from its cache file alone, without reading the archive file.
+	 * @param file the archive file
+	 * @return the loaded archive, or null if there is no up-to-date cache file for it
+	 */
+	public Archive loadCached(File file)
+	{
+		try
+		{
+			Archive archive = new Archive(file);
+
+			String path = file.getAbsolutePath();
+			File cacheFile = new File(this.directory, IndexCache.getCacheName(path));
+			if (this.read(archive, cacheFile, path, file.length(), file.lastModified()))
+				return archive;
+
+			return null;
+		}
+		catch (ArchiveException exception)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Attempts to load an archive from a cache file.
+	 * @param archive the archive to load
+	 * @param cacheFile the cache file
+	 * @param path the absolute path of the archive file
+	 * @param size the size of the archive file
+	 * @param modified the modification time of the archive file
+	 * @return if the archive was loaded
+	 */
+	private boolean read(Archive archive, File cacheFile, String path, long size, long modified)
+	{
+		if (!cacheFile.isFile())
+			return false;
+
+		try
+		{
+			//read into the heap, so no mapping keeps the file from being replaced later
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath()));
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			//check header
+			if (buffer.getInt() != IndexCache.MAGIC || buffer.getInt() != IndexCache.FORMAT_VERSION)
+				return false;
+
+			byte[] cachedPath = new byte[buffer.getInt()];
+			buffer.get(cachedPath);
+			if (!path.equals(new String(cachedPath, StandardCharsets.UTF_8)) || buffer.getLong() != size || buffer.getLong() != modified)
+				return false;
+
+			int signature = buffer.getInt();
+			int version = buffer.getInt();
+			int treeLength = buffer.getInt();
+			int headerLength = buffer.getInt();
+
+			//check payload
+			int checksum = buffer.getInt();
+			CRC32 crc = new CRC32();
+			crc.update(buffer.slice());
+			if ((int) crc.getValue() != checksum)
+				return false;
+
+			archive.load(EntryTable.deserialize(buffer), signature, version, treeLength, headerLength);
+
+			return true;
+		}
+		catch (IOException | ArchiveException | RuntimeException exception)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Attempts to write the entry table of a loaded archive to a cache file.
+	 * The file is written next to its destination and moved into place, so readers never see partial files.
+	 * It is serialized on the heap and written with a plain channel write, as a file cannot be moved while mapped on
+	 * some platforms.
+	 * @param archive the loaded archive
+	 * @param cacheFile the cache file
+	 * @param path the absolute path of the archive file
+	 * @param size the size of the archive file
+	 * @param modified the modification time of the archive file
+	 */
+	private void write(Archive archive, File cacheFile, String path, long size, long modified)
+	{
+		File temporaryFile = null;
+		try
+		{
+			this.directory.mkdirs();
+			temporaryFile = File.createTempFile(cacheFile.getName(), ".tmp", this.directory);
+
+			EntryTable table = archive.getTable();
+			byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+			long headerSize = 4 + 4 + 4 + pathBytes.length + 8 + 8 + 4 * 4 + 4;
+			long totalSize = headerSize + table.getSerializedSize();
+			if (totalSize > Integer.MAX_VALUE)
+				throw new IOException("Entry table too large to cache");
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) totalSize);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			//header
+			buffer.putInt(IndexCache.MAGIC);
+			buffer.putInt(IndexCache.FORMAT_VERSION);
+			buffer.putInt(pathBytes.length);
+			buffer.put(pathBytes);
+			buffer.putLong(size);
+			buffer.putLong(modified);
+			buffer.putInt(archive.getSignature());
+			buffer.putInt(archive.getVersion());
+			buffer.putInt(archive.getTreeLength());
+			buffer.putInt(archive.getHeaderLength());
+
+			//payload
+			int checksumPosition = buffer.position();
+			buffer.putInt(0);
+			ByteBuffer payload = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+			table.serialize(payload);
+
+			CRC32 crc = new CRC32();
+			crc.update(buffer.slice());
+			buffer.putInt(checksumPosition, (int) crc.getValue());
+
+			//write
+			buffer.clear();
+			try (FileChannel fileChannel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				while (buffer.hasRemaining())
+					fileChannel.write(buffer);
+
+				fileChannel.force(false);
+			}
+
+			//move into place
+			try
+			{
+				Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException exception)
+			{
+				Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException | RuntimeException exception)
+		{
+			//the cache is best-effort
+			if (temporaryFile != null)
+				temporaryFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the cache file name for an archive path.
+	 * @param path the absolute path of the archive file
+	 * @return the cache file name
+	 */
+	private static String getCacheName(String path)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(path.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder stringBuilder = new StringBuilder(digest.length * 2 + IndexCache.EXTENSION.length());
+			for (byte value : digest)
+				stringBuilder.append(String.format("%02x", value));
+
+			return stringBuilder.append(IndexCache.EXTENSION).toString();
+		}
+		catch (NoSuchAlgorithmException exception)
+		{
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	/**
+	 * Returns the directory cache files are kept in.
+	 * @return the cache directory
+	 */
+	public File getDirectory()
+	{
+		return this.directory;
+	}
+
+	public static final int MAGIC = 0x494B5056;
+	public static final int FORMAT_VERSION = 1;
+	public static final String EXTENSION = ".vpkidx";
+
+	private File directory;
+}
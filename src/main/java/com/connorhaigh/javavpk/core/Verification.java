@@ -0,0 +1,149 @@
+package com.connorhaigh.javavpk.core;
+
+import java.util.List;
+
+public class Verification
+{
+	/**
+	 * Creates a new verification result.
+	 * @param mismatches the entries whose data did not match their checksum
+	 * @param entryCount the amount of entries checked
+	 * @param byteCount the amount of bytes checked
+	 * @param duration the time taken, in nanoseconds
+	 */
+	protected Verification(List<Mismatch> mismatches, long entryCount, long byteCount, long duration)
+	{
+		this.mismatches = mismatches;
+		this.entryCount = entryCount;
+		this.byteCount = byteCount;
+		this.duration = duration;
+	}
+
+	/**
+	 * Returns if every entry matched its checksum.
+	 * @return if the archive is valid
+	 */
+	public boolean isValid()
+	{
+		return this.mismatches.isEmpty();
+	}
+
+	/**
+	 * Returns the entries whose data did not match their checksum.
+	 * @return the list of mismatches
+	 */
+	public List<Mismatch> getMismatches()
+	{
+		return this.mismatches;
+	}
+
+	/**
+	 * Returns the amount of entries checked.
+	 * @return the amount of entries
+	 */
+	public long getEntryCount()
+	{
+		return this.entryCount;
+	}
+
+	/**
+	 * Returns the amount of bytes checked.
+	 * @return the amount of bytes
+	 */
+	public long getByteCount()
+	{
+		return this.byteCount;
+	}
+
+	/**
+	 * Returns the time taken to verify the archive.
+	 * @return the duration, in nanoseconds
+	 */
+	public long getDuration()
+	{
+		return this.duration;
+	}
+
+	/**
+	 * Returns the verification throughput.
+	 * @return the throughput, in bytes per second
+	 */
+	public double getThroughput()
+	{
+		return (this.duration > 0 ? this.byteCount * 1e9 / this.duration : 0);
+	}
+
+	public static class Mismatch
+	{
+		/**
+		 * Creates a new checksum mismatch.
+		 * @param path the full path of the entry
+		 * @param entry the entry
+		 * @param actualCrc the checksum of the data that was read
+		 * @param truncated if the child archive ended before the entry did
+		 */
+		protected Mismatch(String path, Entry entry, int actualCrc, boolean truncated)
+		{
+			this.path = path;
+			this.entry = entry;
+			this.actualCrc = actualCrc;
+			this.truncated = truncated;
+		}
+
+		/**
+		 * Returns the full path of the entry.
+		 * @return the full path
+		 */
+		public String getPath()
+		{
+			return this.path;
+		}
+
+		/**
+		 * Returns the entry that did not match.
+		 * @return the entry
+		 */
+		public Entry getEntry()
+		{
+			return this.entry;
+		}
+
+		/**
+		 * Returns the checksum stored in the directory tree.
+		 * @return the expected checksum
+		 */
+		public int getExpectedCrc()
+		{
+			return this.entry.getCrc();
+		}
+
+		/**
+		 * Returns the checksum of the data that was read.
+		 * This is meaningless if the entry was truncated.
+		 * @return the actual checksum
+		 */
+		public int getActualCrc()
+		{
+			return this.actualCrc;
+		}
+
+		/**
+		 * Returns if the child archive ended before the entry did.
+		 * @return if the entry was truncated
+		 */
+		public boolean isTruncated()
+		{
+			return this.truncated;
+		}
+
+		private final String path;
+		private final Entry entry;
+		private final int actualCrc;
+		private final boolean truncated;
+	}
+
+	private final List<Mismatch> mismatches;
+	private final long entryCount;
+	private final long byteCount;
+	private final long duration;
+}
@@ -13,27 +13,36 @@ import com.googlecode.lanterna.terminal.ansi.ANSITerminal;
 import com.googlecode.lanterna.terminal.ansi.UnixLikeTerminal;
 import com.googlecode.lanterna.terminal.swing.SwingTerminalFrame;
 import com.googlecode.lanterna.terminal.swing.TerminalEmulatorDeviceConfiguration;
+import io.github.gaming32.stillalive.source.MountOptions;
 import io.github.gaming32.stillalive.source.ResourceFinder;
+import io.github.gaming32.stillalive.source.ResourceKey;
 import io.github.gaming32.stillalive.source.SourceMounts;
 import io.github.gaming32.stillalive.steam.SteamGames;
 import io.github.gaming32.stillalive.util.Util;
 import net.platinumdigitalgroup.jvdf.VDFNode;
 import net.platinumdigitalgroup.jvdf.VDFParser;
+import net.platinumdigitalgroup.jvdf.VDFReader;
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.*;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class StillAlive {
     public static final String TITLE = "Still Alive";
@@ -42,6 +51,11 @@ public class StillAlive {
     public static final int SCREEN_WIDTH_HALF = 55;
     public static final int CREDITS_COL_START = SCREEN_WIDTH_HALF + 2;
 
+    private static final ResourceKey CREDITS_RESOURCE = new ResourceKey("scripts", "credits", "txt");
+    private static final ResourceKey SONG_RESOURCE = new ResourceKey("sound/music", "portal_still_alive", "mp3");
+    // TODO: Language choice?
+    private static final ResourceKey TRANSLATIONS_RESOURCE = new ResourceKey("resource", "portal_english", "txt");
+
     public static void main(String[] args) throws Exception {
         if (SteamGames.PORTAL_PATH == null) {
             fail("Couldn't find Portal installation");
@@ -49,7 +63,10 @@ public class StillAlive {
 
         final ResourceFinder resourceFinder;
         try {
-            resourceFinder = SourceMounts.mountGame(SteamGames.PORTAL_PATH, SteamGames.PORTAL_PATH.resolve("portal"));
+            resourceFinder = SourceMounts.mountGame(
+                SteamGames.PORTAL_PATH, SteamGames.PORTAL_PATH.resolve("portal"),
+                MountOptions.DEFAULT.withLazyVpks(true)
+            );
         } catch (IOException e) {
             if (System.console() == null) {
                 JOptionPane.showMessageDialog(null, e.toString(), TITLE, JOptionPane.ERROR_MESSAGE);
@@ -57,42 +74,48 @@ public class StillAlive {
             throw e;
         }
 
-        final byte[] creditsEntry = resourceFinder.findResource("scripts", "credits", "txt");
+        // The clip decodes the whole song up front, so that overlaps with reading and parsing the text resources
+        final CompletableFuture<@Nullable Clip> song = CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadSong(resourceFinder);
+            } catch (IOException | UnsupportedAudioFileException | LineUnavailableException e) {
+                throw new CompletionException(e);
+            }
+        });
+        final Map<ResourceKey, CompletableFuture<ByteBuffer>> resources = resourceFinder.prefetch(List.of(
+            CREDITS_RESOURCE, TRANSLATIONS_RESOURCE
+        ));
+
+        final ByteBuffer creditsEntry = resources.get(CREDITS_RESOURCE).join();
         if (creditsEntry == null) {
             fail("Couldn't find credits.txt");
         }
         final VDFNode creditsVdf = new VDFParser()
-            .parse(new String(creditsEntry, StandardCharsets.UTF_8))
+            .parse(creditsEntry, StandardCharsets.UTF_8)
             .getSubNode("credits.txt");
         final VDFNode creditsParams = creditsVdf.getSubNode("CreditsParams");
 
-        final byte[] stillAliveEntry = resourceFinder.findResource("sound/music", "portal_still_alive", "mp3");
-        if (stillAliveEntry == null) {
-            fail("Couldn't find portal_still_alive.mp3");
-        }
-        final AudioInputStream mp3Stream = AudioSystem.getAudioInputStream(new ByteArrayInputStream(stillAliveEntry));
-        final AudioFormat mp3Format = mp3Stream.getFormat();
-        final AudioFormat pcmFormat = new AudioFormat(
-            AudioFormat.Encoding.PCM_SIGNED,
-            mp3Format.getSampleRate(),
-            16,
-            mp3Format.getChannels(),
-            16 * mp3Format.getChannels() / 8,
-            mp3Format.getSampleRate(),
-            mp3Format.isBigEndian()
-        );
-        final AudioInputStream pcmStream = AudioSystem.getAudioInputStream(pcmFormat, mp3Stream);
-        final Clip audioClip = AudioSystem.getClip();
-        audioClip.open(pcmStream);
-        ((FloatControl)audioClip.getControl(FloatControl.Type.MASTER_GAIN)).setValue(20f * (float)Math.log10(0.2));
-
-        // TODO: Language choice?
-        final byte[] translationsEntry = resourceFinder.findResource("resource", "portal_english", "txt");
+        final ByteBuffer translationsEntry = resources.get(TRANSLATIONS_RESOURCE).join();
         if (translationsEntry == null) {
             fail("Couldn't find translations file");
         }
         final Map<String, String> translations = loadTranslations(translationsEntry);
 
+        final Clip audioClip;
+        try {
+            audioClip = song.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        if (audioClip == null) {
+            fail("Couldn't find portal_still_alive.mp3");
+        }
+        // Every stream over the game's files is closed by now
+        resourceFinder.close();
+
         final String[] textColorString = creditsParams.getString("color").split(" ");
         final TextColor bgColor = TextColor.ANSI.BLACK;
         final TextColor textColor = new TextColor.RGB(
@@ -215,11 +238,50 @@ public class StillAlive {
             }
         } finally {
             audioClip.close();
-            pcmStream.close();
-            mp3Stream.close();
         }
     }
 
+    /**
+     * @return The opened clip, or {@code null} if the song is missing
+     */
+    private static @Nullable Clip loadSong(
+        ResourceFinder resourceFinder
+    ) throws IOException, UnsupportedAudioFileException, LineUnavailableException {
+        try (InputStream songStream = resourceFinder.openResource(
+            SONG_RESOURCE.directory(), SONG_RESOURCE.name(), SONG_RESOURCE.extension()
+        )) {
+            if (songStream == null) {
+                return null;
+            }
+            try (
+                AudioInputStream mp3Stream = AudioSystem.getAudioInputStream(new BufferedInputStream(songStream));
+                AudioInputStream pcmStream = AudioSystem.getAudioInputStream(toPcm(mp3Stream.getFormat()), mp3Stream)
+            ) {
+                final Clip audioClip = AudioSystem.getClip();
+                try {
+                    audioClip.open(pcmStream);
+                } catch (IOException | LineUnavailableException | RuntimeException e) {
+                    audioClip.close();
+                    throw e;
+                }
+                ((FloatControl)audioClip.getControl(FloatControl.Type.MASTER_GAIN)).setValue(20f * (float)Math.log10(0.2));
+                return audioClip;
+            }
+        }
+    }
+
+    private static AudioFormat toPcm(AudioFormat mp3Format) {
+        return new AudioFormat(
+            AudioFormat.Encoding.PCM_SIGNED,
+            mp3Format.getSampleRate(),
+            16,
+            mp3Format.getChannels(),
+            16 * mp3Format.getChannels() / 8,
+            mp3Format.getSampleRate(),
+            mp3Format.isBigEndian()
+        );
+    }
+
     private static void drawMainBoxes(TextGraphics graphics) {
         graphics.drawLine(0, 0, SCREEN_WIDTH_HALF - 1, 0, '-');
         graphics.drawLine(SCREEN_WIDTH_HALF + 1, 0, SCREEN_WIDTH_HALF * 2, 0, '-');
@@ -231,21 +293,21 @@ public class StillAlive {
         graphics.drawLine(SCREEN_WIDTH_HALF + 1, SCREEN_HEIGHT_HALF - 1, SCREEN_WIDTH_HALF * 2, SCREEN_HEIGHT_HALF - 1, '_');
     }
 
-    private static Map<String, String> loadTranslations(byte[] data) {
-        return new VDFParser()
-            .parse(removeBom(new String(data, StandardCharsets.UTF_16LE)))
-            .getSubNode("lang")
-            .getSubNode("Tokens")
-            .entrySet()
-            .stream()
-            .collect(Collectors.toMap(Map.Entry::getKey, e -> (String)e.getValue()[0], (a, b) -> b, LinkedHashMap::new));
-    }
-
-    private static String removeBom(String text) {
-        if (text.startsWith("\ufeff")) {
-            return text.substring(1);
+    private static Map<String, String> loadTranslations(ByteBuffer data) {
+        final VDFReader reader = new VDFReader(data, StandardCharsets.UTF_16LE);
+        final Map<String, String> translations = new LinkedHashMap<>();
+        if (!reader.findObject("lang") || !reader.findObject("Tokens")) {
+            fail("Couldn't find translation tokens");
+        }
+        while (reader.next() == VDFReader.Event.KEY) {
+            final String key = reader.getText();
+            if (reader.next() == VDFReader.Event.VALUE) {
+                translations.putIfAbsent(key, reader.getText());
+            } else {
+                reader.skip();
+            }
         }
-        return text;
+        return translations;
     }
 
     @Contract("_ -> fail")
@@ -0,0 +1,60 @@
+package io.github.gaming32.stillalive.source;
+
+/**
+ * A compact probabilistic set of resource keys, with no false negatives and about 1% false positives.
+ */
+final class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final int mask;
+
+    BloomFilter(int expectedKeys) {
+        final int bitCount = bitCount(expectedKeys);
+        bits = new long[bitCount >>> 6];
+        mask = bitCount - 1;
+    }
+
+    void add(String directory, String name, String extension) {
+        add(ResourceKey.hash(directory, name, extension));
+    }
+
+    void add(long hash) {
+        final int h1 = (int)hash;
+        final int h2 = (int)(hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            final int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String directory, String name, String extension) {
+        return mightContain(ResourceKey.hash(directory, name, extension));
+    }
+
+    boolean mightContain(long hash) {
+        final int h1 = (int)hash;
+        final int h2 = (int)(hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            final int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static BloomFilter of(long[] hashes) {
+        final BloomFilter result = new BloomFilter(hashes.length);
+        for (final long hash : hashes) {
+            result.add(hash);
+        }
+        return result;
+    }
+
+    private static int bitCount(int keys) {
+        final long wanted = Math.max(64L, (long)keys * BITS_PER_KEY);
+        return (int)Math.min(1L << 30, Long.highestOneBit(wanted - 1) << 1);
+    }
+}
@@ -0,0 +1,347 @@
+package io.github.gaming32.stillalive.source;
+
+import io.github.gaming32.stillalive.util.ByteBufferInputStream;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps recently found resources in memory, evicting the least recently used ones once the byte budget is exceeded.
+ * Resources larger than the whole budget are never cached.
+ * <p>
+ * Lookups of different resources never wait on each other, and concurrent lookups of the same resource share a single
+ * load. Buffers and streams are served as read-only views of the cached bytes, while {@link #findResource} still
+ * returns a copy, since callers own the array. Streams that miss are cached once they've been read to the end.
+ */
+public class CachingResourceFinder implements ResourceFinder {
+    private final ResourceFinder delegate;
+    private final long maxBytes;
+    private final ConcurrentHashMap<ResourceKey, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Object evictionLock = new Object();
+
+    public CachingResourceFinder(ResourceFinder delegate, long maxBytes) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+    }
+
+    public ResourceFinder getDelegate() {
+        return delegate;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        final ByteBuffer resource = find(
+            new ResourceKey(directory, name, extension),
+            finder -> {
+                final byte[] result = finder.findResource(directory, name, extension);
+                return result != null ? ByteBuffer.wrap(result) : null;
+            },
+            true
+        );
+        if (resource == null) {
+            return null;
+        }
+        final byte[] result = new byte[resource.remaining()];
+        resource.get(result);
+        return result;
+    }
+
+    /**
+     * Missed resources are copied onto the heap to be cached, unless they're larger than the whole budget.
+     */
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        return find(
+            new ResourceKey(directory, name, extension),
+            finder -> finder.findResourceBuffer(directory, name, extension),
+            false
+        );
+    }
+
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        final ResourceKey key = new ResourceKey(directory, name, extension);
+        final CacheEntry entry = cache.get(key);
+        if (entry != null) {
+            hits.increment();
+            entry.lastUse = clock.incrementAndGet();
+            final ByteBuffer cached = entry.await();
+            return cached != null ? new ByteBufferInputStream(cached) : null;
+        }
+        misses.increment();
+        final InputStream resource = delegate.openResource(directory, name, extension);
+        return resource != null ? new CachingInputStream(key, resource) : null;
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        return delegate.mightContain(directory, name, extension);
+    }
+
+    @Override
+    public boolean visitResources(ResourceVisitor visitor) throws IOException {
+        return delegate.visitResources(visitor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        clear();
+        delegate.close();
+    }
+
+    public void clear() {
+        cache.forEach(this::remove);
+    }
+
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @param owned Whether the loaded buffer wraps an array that nothing else refers to, which can be cached as is
+     */
+    private @Nullable ByteBuffer find(ResourceKey key, ResourceProbe<ByteBuffer> loader, boolean owned) throws IOException {
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            final CacheEntry created = new CacheEntry();
+            entry = cache.putIfAbsent(key, created);
+            if (entry == null) {
+                misses.increment();
+                return load(key, created, loader, owned);
+            }
+        }
+        hits.increment();
+        entry.lastUse = clock.incrementAndGet();
+        return entry.await();
+    }
+
+    private @Nullable ByteBuffer load(
+        ResourceKey key, CacheEntry entry, ResourceProbe<ByteBuffer> loader, boolean owned
+    ) throws IOException {
+        final ByteBuffer resource;
+        try {
+            resource = loader.probe(delegate);
+        } catch (IOException | RuntimeException | Error e) {
+            remove(key, entry);
+            entry.value.completeExceptionally(e);
+            throw e;
+        }
+        if (resource == null || resource.remaining() > maxBytes) {
+            // Lookups that were waiting still share this load, but the result isn't kept
+            remove(key, entry);
+            entry.value.complete(resource != null ? resource.asReadOnlyBuffer() : null);
+            return resource;
+        }
+        final byte[] bytes;
+        if (owned && resource.hasArray() && resource.arrayOffset() == 0 && resource.remaining() == resource.array().length) {
+            bytes = resource.array();
+        } else {
+            bytes = new byte[resource.remaining()];
+            resource.duplicate().get(bytes);
+        }
+        entry.store(bytes.length);
+        entry.value.complete(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+        evict();
+        return entry.await();
+    }
+
+    private void put(ResourceKey key, byte[] resource) {
+        final CacheEntry entry = new CacheEntry();
+        if (cache.putIfAbsent(key, entry) == null) {
+            entry.store(resource.length);
+            entry.value.complete(ByteBuffer.wrap(resource).asReadOnlyBuffer());
+            evict();
+        }
+    }
+
+    private void remove(ResourceKey key, CacheEntry entry) {
+        if (cache.remove(key, entry)) {
+            entry.release();
+        }
+    }
+
+    // Recency is a clock value per entry rather than a linked list, so hits don't contend. The price is a sort of the
+    // cache when the budget is exceeded.
+    private void evict() {
+        if (size.get() <= maxBytes) return;
+        synchronized (evictionLock) {
+            final List<EvictionCandidate> candidates = new ArrayList<>(cache.size());
+            cache.forEach((key, entry) -> {
+                if (entry.value.isDone()) {
+                    candidates.add(new EvictionCandidate(key, entry, entry.lastUse));
+                }
+            });
+            candidates.sort(Comparator.comparingLong(EvictionCandidate::lastUse));
+            for (final EvictionCandidate candidate : candidates) {
+                if (size.get() <= maxBytes) break;
+                if (cache.remove(candidate.key(), candidate.entry()) && candidate.entry().release()) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CachingResourceFinder[" + delegate + "]";
+    }
+
+    private record EvictionCandidate(ResourceKey key, CacheEntry entry, long lastUse) {
+    }
+
+    private final class CacheEntry {
+        final CompletableFuture<@Nullable ByteBuffer> value = new CompletableFuture<>();
+        volatile long lastUse = clock.incrementAndGet();
+        private long bytes = -1;
+        private boolean removed;
+
+        synchronized void store(long bytes) {
+            if (!removed) {
+                this.bytes = bytes;
+                size.addAndGet(bytes);
+            }
+        }
+
+        /**
+         * @return Whether the entry's bytes were counted in the cache size
+         */
+        synchronized boolean release() {
+            if (removed) {
+                return false;
+            }
+            removed = true;
+            if (bytes < 0) {
+                return false;
+            }
+            size.addAndGet(-bytes);
+            return true;
+        }
+
+        @Nullable ByteBuffer await() throws IOException {
+            final ByteBuffer result;
+            try {
+                result = value.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException ioe) {
+                    throw new IOException(ioe.getMessage(), ioe);
+                }
+                if (e.getCause() instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw e;
+            }
+            return result != null ? result.duplicate() : null;
+        }
+    }
+
+    private final class CachingInputStream extends FilterInputStream {
+        private final ResourceKey key;
+        private final int limit = (int)Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        private byte @Nullable [] captured = new byte[Math.min(limit, 8192)];
+        private int count;
+
+        CachingInputStream(ResourceKey key, InputStream in) {
+            super(in);
+            this.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result < 0) {
+                finish();
+            } else if (reserve(1)) {
+                captured[count++] = (byte)result;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int result = super.read(b, off, len);
+            if (result < 0) {
+                finish();
+            } else if (reserve(result)) {
+                System.arraycopy(b, off, captured, count, result);
+                count += result;
+            }
+            return result;
+        }
+
+        // Skipped bytes are never seen, so the resource can't be cached
+        @Override
+        public long skip(long n) throws IOException {
+            captured = null;
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+        }
+
+        @Override
+        public void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        // Gives up on caching once the resource outgrows the budget
+        private boolean reserve(int len) {
+            if (captured == null) {
+                return false;
+            }
+            if (count + (long)len > limit) {
+                captured = null;
+                return false;
+            }
+            if (count + len > captured.length) {
+                captured = Arrays.copyOf(captured, (int)Math.min(Math.max(count + len, captured.length * 2L), limit));
+            }
+            return true;
+        }
+
+        private void finish() {
+            if (captured != null) {
+                put(key, Arrays.copyOf(captured, count));
+                captured = null;
+            }
+        }
+    }
+}
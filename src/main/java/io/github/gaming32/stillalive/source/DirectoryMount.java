@@ -0,0 +1,122 @@
+package io.github.gaming32.stillalive.source;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * A loose directory mount. The directory is walked once when mounted, so that misses can be rejected by a filter
+ * without touching the filesystem. Lookups that pass the filter go to the filesystem, so names match with the
+ * filesystem's own case rules.
+ * <p>
+ * The filter holds lowercased paths, so it never rejects a lookup that a case-insensitive filesystem would accept.
+ * Files added after the walk are rejected by it; use a {@link WatchedDirectoryMount} for directories that change.
+ */
+public class DirectoryMount implements ResourceFinder {
+    private final Path dir;
+    private final @Nullable BloomFilter filter;
+
+    public DirectoryMount(Path dir) {
+        this.dir = dir;
+        this.filter = walk(dir);
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        final Path file = resolve(directory, name, extension);
+        return file != null && Files.exists(file) ? Files.readAllBytes(file) : null;
+    }
+
+    /**
+     * Maps the whole file read-only.
+     */
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        final Path file = resolve(directory, name, extension);
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        final Path file = resolve(directory, name, extension);
+        return file != null && Files.exists(file) ? Files.newInputStream(file) : null;
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        return filter == null || filter.mightContain(hash(directory, extension.isEmpty() ? name : name + '.' + extension));
+    }
+
+    /**
+     * Exact-case keys would reject lookups that a case-insensitive filesystem accepts, so directory mounts stay out of
+     * merged indices.
+     */
+    @Override
+    public boolean visitResources(ResourceVisitor visitor) {
+        return false;
+    }
+
+    private @Nullable Path resolve(String directory, String name, String extension) {
+        if (!mightContain(directory, name, extension)) {
+            return null;
+        }
+        return dir.resolve(directory).resolve(extension.isEmpty() ? name : name + '.' + extension);
+    }
+
+    /**
+     * @return The filter, or {@code null} if the directory couldn't be walked, in which case nothing is rejected
+     */
+    private static @Nullable BloomFilter walk(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return BloomFilter.of(new long[0]);
+        }
+        final String separator = dir.getFileSystem().getSeparator();
+        try (Stream<Path> stream = Files.walk(dir)) {
+            final LongStream.Builder hashes = LongStream.builder();
+            stream.filter(Files::isRegularFile).forEach(file -> {
+                final Path relative = dir.relativize(file);
+                final Path parent = relative.getParent();
+                hashes.add(hash(
+                    parent != null ? parent.toString().replace(separator, "/") : "",
+                    relative.getFileName().toString()
+                ));
+            });
+            return BloomFilter.of(hashes.build().toArray());
+        } catch (IOException | UncheckedIOException e) {
+            return null;
+        }
+    }
+
+    // Whole file names are hashed, so names with extra dots match however they're split
+    private static long hash(String directory, String fileName) {
+        return ResourceKey.hash(
+            directory.replace('\\', '/').toLowerCase(Locale.ROOT),
+            fileName.toLowerCase(Locale.ROOT),
+            ""
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryMount[" + dir + "]";
+    }
+}
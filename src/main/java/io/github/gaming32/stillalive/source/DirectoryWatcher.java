@@ -0,0 +1,115 @@
+package io.github.gaming32.stillalive.source;
+
+import io.github.gaming32.stillalive.util.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares one {@link WatchService} and watcher thread per filesystem between every watched mount, since each service
+ * costs a thread and, on Linux, an inotify instance.
+ * <p>
+ * Registering a directory that's already watched returns the same key, so keys are only cancelled once their last
+ * listener is removed.
+ */
+final class DirectoryWatcher {
+    private static final Map<FileSystem, DirectoryWatcher> WATCHERS = new HashMap<>();
+
+    private final WatchService service;
+    private final Map<WatchKey, List<Listener>> listeners = new HashMap<>();
+
+    private DirectoryWatcher(WatchService service) {
+        this.service = service;
+    }
+
+    static synchronized DirectoryWatcher forFileSystem(FileSystem fileSystem) throws IOException {
+        DirectoryWatcher watcher = WATCHERS.get(fileSystem);
+        if (watcher == null) {
+            final DirectoryWatcher created = new DirectoryWatcher(fileSystem.newWatchService());
+            Util.startThread("DirectoryWatcher", created::run);
+            WATCHERS.put(fileSystem, created);
+            watcher = created;
+        }
+        return watcher;
+    }
+
+    synchronized WatchKey register(Path dir, Listener listener) throws IOException {
+        final WatchKey key = dir.register(
+            service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE
+        );
+        listeners.computeIfAbsent(key, k -> new ArrayList<>()).add(listener);
+        return key;
+    }
+
+    synchronized void cancel(WatchKey key, Listener listener) {
+        final List<Listener> keyListeners = listeners.get(key);
+        if (keyListeners == null || !keyListeners.remove(listener)) return;
+        if (keyListeners.isEmpty()) {
+            listeners.remove(key);
+            key.cancel();
+        }
+    }
+
+    private synchronized List<Listener> getListeners(WatchKey key) {
+        final List<Listener> keyListeners = listeners.get(key);
+        return keyListeners != null ? List.copyOf(keyListeners) : List.of();
+    }
+
+    private synchronized List<Listener> getAllListeners() {
+        final List<Listener> result = new ArrayList<>();
+        listeners.values().forEach(result::addAll);
+        return result;
+    }
+
+    // Listeners are called without the lock held, so they can cancel their own keys
+    private void run() throws InterruptedException {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = service.take();
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost for any key, not just this one
+                    getAllListeners().forEach(listener -> listener.changed(null));
+                } else {
+                    final Path name = (Path)event.context();
+                    getListeners(key).forEach(listener -> listener.changed(name));
+                }
+            }
+            if (!key.reset()) {
+                final List<Listener> removed;
+                synchronized (this) {
+                    removed = listeners.remove(key);
+                }
+                if (removed != null) {
+                    removed.forEach(listener -> listener.changed(null));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * @param name The name of the entry created or deleted in the watched directory, or {@code null} if events
+         * were lost or the directory can't be watched anymore
+         */
+        void changed(@Nullable Path name);
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.gaming32.stillalive.source;
+
+import io.github.gaming32.stillalive.util.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Indexes resources by a 64-bit hash of their key, so the index holds no objects per resource. The hash only picks
+ * the finder to ask, which looks the resource up in its own index. If that finder misses, the hash belonged to another
+ * resource, and the finders after it are probed in order.
+ */
+final class IndexedResourceFinder implements ResourceFinder {
+    private final List<ResourceFinder> finders;
+    private final HashIndex index;
+    private final int[] unindexed;
+    private final @Nullable ResourceMetrics metrics;
+
+    IndexedResourceFinder(List<ResourceFinder> finders, @Nullable ResourceMetrics metrics) throws IOException {
+        this.finders = finders;
+        this.metrics = metrics;
+        final HashIndex index = new HashIndex();
+        final IntStream.Builder unindexed = IntStream.builder();
+        for (int i = 0; i < finders.size(); i++) {
+            final ResourceFinder finder = finders.get(i);
+            if (finder == NULL) continue;
+            final int position = i;
+            final boolean listed = finder.visitResources(
+                (directory, name, extension) -> index.putIfAbsent(ResourceKey.hash(directory, name, extension), position)
+            );
+            if (!listed) {
+                unindexed.add(i);
+            }
+        }
+        this.index = index;
+        this.unindexed = unindexed.build().toArray();
+    }
+
+    List<ResourceFinder> getFinders() {
+        return finders;
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        return find(directory, name, extension, finder -> finder.findResource(directory, name, extension));
+    }
+
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        return find(directory, name, extension, finder -> finder.findResourceBuffer(directory, name, extension));
+    }
+
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        return find(directory, name, extension, finder -> finder.openResource(directory, name, extension));
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        if (index.get(ResourceKey.hash(directory, name, extension)) >= 0) {
+            return true;
+        }
+        for (final int position : unindexed) {
+            if (finders.get(position).mightContain(directory, name, extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean visitResources(ResourceVisitor visitor) throws IOException {
+        if (unindexed.length != 0) {
+            return false;
+        }
+        for (final ResourceFinder finder : finders) {
+            finder.visitResources(visitor);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Util.closeAll(finders);
+    }
+
+    // Finders that can't list their resources are probed in order, but only those ahead of the indexed winner
+    private <T> @Nullable T find(String directory, String name, String extension, ResourceProbe<T> probe) throws IOException {
+        final int winner = index.get(ResourceKey.hash(directory, name, extension));
+        final int limit = winner >= 0 ? winner : finders.size();
+        int depth = 0;
+        for (final int position : unindexed) {
+            if (position >= limit) break;
+            final ResourceFinder finder = finders.get(position);
+            if (!finder.mightContain(directory, name, extension)) continue;
+            depth++;
+            final T resource = probe.probe(finder);
+            if (resource != null) {
+                recordLookup(directory, name, extension, depth, true);
+                return resource;
+            }
+        }
+        if (winner >= 0) {
+            // A miss in the winner means the hash collided, so any later finder may still have the resource
+            for (int position = winner; position < finders.size(); position++) {
+                final ResourceFinder finder = finders.get(position);
+                if (position != winner && !finder.mightContain(directory, name, extension)) continue;
+                depth++;
+                final T resource = probe.probe(finder);
+                if (resource != null) {
+                    recordLookup(directory, name, extension, depth, true);
+                    return resource;
+                }
+            }
+        }
+        recordLookup(directory, name, extension, depth, false);
+        return null;
+    }
+
+    private void recordLookup(String directory, String name, String extension, int depth, boolean hit) {
+        if (metrics != null) {
+            metrics.recordLookup(directory, name, extension, depth, hit);
+        }
+    }
+
+    /**
+     * An open-addressed map from key hashes to the position of the first finder with that hash.
+     */
+    private static final class HashIndex {
+        private long[] hashes = new long[64];
+        private int[] positions = new int[64]; // Position + 1, or 0 for a free slot
+        private int size;
+
+        int get(long hash) {
+            final int mask = hashes.length - 1;
+            for (int slot = (int)hash & mask; positions[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash) {
+                    return positions[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        void putIfAbsent(long hash, int position) {
+            final int mask = hashes.length - 1;
+            int slot = (int)hash & mask;
+            for (; positions[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash) return;
+            }
+            hashes[slot] = hash;
+            positions[slot] = position + 1;
+            if (++size * 2 > hashes.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            final long[] oldHashes = hashes;
+            final int[] oldPositions = positions;
+            hashes = new long[oldHashes.length * 2];
+            positions = new int[oldHashes.length * 2];
+            final int mask = hashes.length - 1;
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldPositions[i] == 0) continue;
+                int slot = (int)oldHashes[i] & mask;
+                while (positions[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+}
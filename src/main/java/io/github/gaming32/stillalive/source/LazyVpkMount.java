@@ -0,0 +1,158 @@
+package io.github.gaming32.stillalive.source;
+
+import com.connorhaigh.javavpk.core.Archive;
+import com.connorhaigh.javavpk.core.IndexCache;
+import com.connorhaigh.javavpk.exceptions.ArchiveException;
+import com.connorhaigh.javavpk.exceptions.EntryException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A VPK mount that only checks the archive header up front, and loads the directory tree on the first lookup.
+ * <p>
+ * Until then, the mount lists its resources and rejects misses from the archive's {@link IndexCache} entry, so it
+ * can take part in merged indices and lookups of resources it doesn't have never load it. Without a cache entry, it
+ * stays out of merged indices and every lookup that reaches it loads it.
+ */
+public class LazyVpkMount implements ResourceFinder {
+    private final File file;
+    private final IndexCache indexCache;
+    private volatile @Nullable VpkMount mount;
+    private volatile @Nullable BloomFilter cachedFilter;
+    private volatile boolean cacheChecked;
+
+    public LazyVpkMount(File file, IndexCache indexCache) throws IOException {
+        this.file = file;
+        this.indexCache = indexCache;
+        checkHeader(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isLoaded() {
+        return mount != null;
+    }
+
+    public Archive getArchive() throws IOException {
+        return load().getArchive();
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        return load().findResource(directory, name, extension);
+    }
+
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        return load().findResourceBuffer(directory, name, extension);
+    }
+
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        return load().openResource(directory, name, extension);
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        final VpkMount loaded = mount;
+        if (loaded != null) {
+            return loaded.mightContain(directory, name, extension);
+        }
+        final BloomFilter filter = getCachedFilter();
+        return filter == null || filter.mightContain(directory, name, extension);
+    }
+
+    @Override
+    public boolean visitResources(ResourceVisitor visitor) throws IOException {
+        final VpkMount loaded = mount;
+        if (loaded != null) {
+            return loaded.visitResources(visitor);
+        }
+        final Archive cached = indexCache.loadCached(file);
+        if (cached == null) {
+            return false;
+        }
+        cached.visitEntries(visitor::visit);
+        initCachedFilter(cached);
+        return true;
+    }
+
+    /**
+     * Closes the archive, if it was loaded.
+     */
+    @Override
+    public void close() throws IOException {
+        final VpkMount result = mount;
+        if (result != null) {
+            result.close();
+        }
+    }
+
+    // The cache is only read once for the filter, whether or not it has an entry for the archive
+    private @Nullable BloomFilter getCachedFilter() {
+        if (!cacheChecked) {
+            initCachedFilter(indexCache.loadCached(file));
+        }
+        return cachedFilter;
+    }
+
+    private synchronized void initCachedFilter(@Nullable Archive cached) {
+        if (!cacheChecked) {
+            if (cached != null) {
+                cachedFilter = VpkMount.createFilter(cached);
+            }
+            cacheChecked = true;
+        }
+    }
+
+    private VpkMount load() throws IOException {
+        VpkMount result = mount;
+        if (result == null) {
+            synchronized (this) {
+                result = mount;
+                if (result == null) {
+                    try {
+                        result = new VpkMount(indexCache.load(file));
+                    } catch (ArchiveException | EntryException e) {
+                        throw new IOException(e);
+                    }
+                    mount = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void checkHeader(File file) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException(file + " is too short to be a VPK");
+                }
+            }
+        }
+        header.flip();
+        if (header.getInt() != Archive.SIGNATURE) {
+            throw new IOException(file + " has an invalid VPK signature");
+        }
+        final int version = header.getInt();
+        if (version < Archive.MINIMUM_VERSION || version > Archive.MAXIMUM_VERSION) {
+            throw new IOException(file + " has unsupported VPK version " + version);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyVpkMount[" + file + (isLoaded() ? ", loaded]" : "]");
+    }
+}
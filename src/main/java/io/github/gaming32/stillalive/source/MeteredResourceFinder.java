@@ -0,0 +1,113 @@
+package io.github.gaming32.stillalive.source;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+final class MeteredResourceFinder implements ResourceFinder {
+    private final ResourceFinder delegate;
+    private final MountStats stats;
+
+    MeteredResourceFinder(ResourceFinder delegate, MountStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+    }
+
+    ResourceFinder getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        final MountLookupEvent event = new MountLookupEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        final byte[] resource = delegate.findResource(directory, name, extension);
+        record(event, start, directory, name, extension, resource != null, resource != null ? resource.length : 0);
+        return resource;
+    }
+
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        final MountLookupEvent event = new MountLookupEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        final ByteBuffer resource = delegate.findResourceBuffer(directory, name, extension);
+        record(event, start, directory, name, extension, resource != null, resource != null ? resource.remaining() : 0);
+        return resource;
+    }
+
+    /**
+     * Stream bytes are counted as they're read, so the recorded latency only covers opening the stream.
+     */
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        final MountLookupEvent event = new MountLookupEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        final InputStream resource = delegate.openResource(directory, name, extension);
+        record(event, start, directory, name, extension, resource != null, 0);
+        return resource != null ? new CountingInputStream(resource) : null;
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        return delegate.mightContain(directory, name, extension);
+    }
+
+    @Override
+    public boolean visitResources(ResourceVisitor visitor) throws IOException {
+        return delegate.visitResources(visitor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private void record(
+        MountLookupEvent event, long start, String directory, String name, String extension, boolean hit, long bytes
+    ) {
+        stats.recordLookup(hit, bytes, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.mount = stats.getName();
+            event.resource = new ResourceKey(directory, name, extension).toString();
+            event.hit = hit;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result >= 0) {
+                stats.recordBytes(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int result = super.read(b, off, len);
+            if (result > 0) {
+                stats.recordBytes(result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.gaming32.stillalive.source;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.github.gaming32.stillalive.MountLookup")
+@Label("Mount Lookup")
+@Description("A lookup in a single mount")
+@Category({"Still Alive", "Resources"})
+@StackTrace(false)
+class MountLookupEvent extends Event {
+    @Label("Mount")
+    String mount;
+
+    @Label("Resource")
+    String resource;
+
+    @Label("Hit")
+    boolean hit;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,32 @@
+package io.github.gaming32.stillalive.source;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @param lazyVpks Whether VPKs are only checked when mounted, and loaded on the first lookup that reaches them
+ * @param watchDirectories Whether loose directories are served from in-memory listings of the directories looked in,
+ * kept current by a {@link java.nio.file.WatchService}, instead of the filesystem
+ * @param caseInsensitive Whether watched directories match names case-insensitively, like Source does
+ * @param metrics Records lookups through each mount and the merged finder, if not {@code null}
+ */
+public record MountOptions(
+    boolean lazyVpks, boolean watchDirectories, boolean caseInsensitive, @Nullable ResourceMetrics metrics
+) {
+    public static final MountOptions DEFAULT = new MountOptions(false, false, false, null);
+
+    public MountOptions withLazyVpks(boolean lazyVpks) {
+        return new MountOptions(lazyVpks, watchDirectories, caseInsensitive, metrics);
+    }
+
+    public MountOptions withWatchDirectories(boolean watchDirectories) {
+        return new MountOptions(lazyVpks, watchDirectories, caseInsensitive, metrics);
+    }
+
+    public MountOptions withCaseInsensitive(boolean caseInsensitive) {
+        return new MountOptions(lazyVpks, watchDirectories, caseInsensitive, metrics);
+    }
+
+    public MountOptions withMetrics(@Nullable ResourceMetrics metrics) {
+        return new MountOptions(lazyVpks, watchDirectories, caseInsensitive, metrics);
+    }
+}
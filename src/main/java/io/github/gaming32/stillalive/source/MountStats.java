@@ -0,0 +1,94 @@
+package io.github.gaming32.stillalive.source;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lookup statistics for one mount. Latencies are kept in a histogram of power-of-two nanosecond buckets.
+ */
+public final class MountStats {
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+    MountStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getLookups() {
+        return getHits() + getMisses();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the latency histogram, where element {@code i} counts lookups that took {@code [2^i, 2^(i+1))} ns.
+     */
+    public long[] getLatencyHistogram() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = latencies.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Estimates a latency percentile from the histogram, as the upper bound of the bucket it falls in.
+     */
+    public long getLatencyPercentile(double percentile) {
+        final long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (final long count : histogram) {
+            total += count;
+        }
+        final long target = (long)Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= target && seen > 0) {
+                return i < BUCKETS - 1 ? (1L << (i + 1)) - 1 : Long.MAX_VALUE;
+            }
+        }
+        return 0;
+    }
+
+    void recordLookup(boolean hit, long bytes, long nanos) {
+        (hit ? hits : misses).increment();
+        bytesRead.add(bytes);
+        totalNanos.add(nanos);
+        latencies.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+    }
+
+    void recordBytes(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getHits() + " hits, " + getMisses() + " misses, " + getBytesRead() + " bytes, p50 "
+            + getLatencyPercentile(50) + " ns, p99 " + getLatencyPercentile(99) + " ns";
+    }
+}
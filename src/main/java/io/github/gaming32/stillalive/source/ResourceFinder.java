@@ -2,32 +2,132 @@ package io.github.gaming32.stillalive.source;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @FunctionalInterface
-public interface ResourceFinder {
+public interface ResourceFinder extends Closeable {
     ResourceFinder NULL = (directory, name, extension) -> null;
 
     byte @Nullable [] findResource(String directory, String name, String extension) throws IOException;
 
+    /**
+     * Finds a resource as a read-only buffer, which finders backed by files can map instead of copying onto the heap.
+     * The default implementation wraps {@link #findResource}.
+     */
+    default @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        final byte[] resource = findResource(directory, name, extension);
+        return resource != null ? ByteBuffer.wrap(resource).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Opens a stream over a resource, so that large resources can be consumed without reading them fully into memory.
+     * The default implementation wraps {@link #findResource}.
+     */
+    default @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        final byte[] resource = findResource(directory, name, extension);
+        return resource != null ? new ByteArrayInputStream(resource) : null;
+    }
+
+    /**
+     * Cheaply checks whether this finder might have a resource, without any lookup or filesystem access.
+     * May return false positives, but never false negatives.
+     */
+    default boolean mightContain(String directory, String name, String extension) {
+        return true;
+    }
+
+    /**
+     * Visits every resource this finder can return, so that it can take part in a merged index. Resources shadowed
+     * within the finder may be visited more than once.
+     * Returns {@code false} without visiting anything if the resources can't be listed, in which case the finder is
+     * probed on each lookup instead.
+     */
+    default boolean visitResources(ResourceVisitor visitor) throws IOException {
+        return false;
+    }
+
+    /**
+     * Releases whatever the finder holds open, such as archive channels and directory watches. Finders that wrap or
+     * merge other finders close them too. Does nothing by default.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Starts finding the resources in the background, so that independent resources load in parallel while the caller
+     * does other work. Mapped resources are paged in before their futures complete. Missing resources complete with
+     * {@code null}.
+     */
+    default Map<ResourceKey, CompletableFuture<@Nullable ByteBuffer>> prefetch(Collection<ResourceKey> keys) {
+        return prefetch(keys, ResourcePrefetcher.EXECUTOR);
+    }
+
+    default Map<ResourceKey, CompletableFuture<@Nullable ByteBuffer>> prefetch(
+        Collection<ResourceKey> keys, Executor executor
+    ) {
+        return ResourcePrefetcher.prefetch(this, keys, executor);
+    }
+
     static ResourceFinder sequential(ResourceFinder... finders) {
         return sequential(List.of(finders));
     }
 
     static ResourceFinder sequential(List<ResourceFinder> finders) {
+        return sequential(finders, null);
+    }
+
+    /**
+     * @param metrics Receives the probe depth of each lookup, if not {@code null}
+     */
+    static ResourceFinder sequential(List<ResourceFinder> finders, @Nullable ResourceMetrics metrics) {
+        return switch (finders.size()) {
+            case 0 -> NULL;
+            case 1 -> finders.get(0);
+            default -> new SequentialResourceFinder(List.copyOf(finders), metrics);
+        };
+    }
+
+    /**
+     * Merges the finders into a single index built once up front, where earlier finders take priority.
+     * Lookups become one hash probe, plus a probe of any finders ahead of the winner that couldn't list their resources.
+     */
+    static ResourceFinder indexed(List<ResourceFinder> finders) throws IOException {
+        return indexed(finders, null);
+    }
+
+    /**
+     * @param metrics Receives the probe depth of each lookup, if not {@code null}
+     */
+    static ResourceFinder indexed(List<ResourceFinder> finders, @Nullable ResourceMetrics metrics) throws IOException {
         return switch (finders.size()) {
             case 0 -> NULL;
             case 1 -> finders.get(0);
-            default -> (directory, name, extension) -> {
-                for (final ResourceFinder finder : finders) {
-                    final byte[] resource = finder.findResource(directory, name, extension);
-                    if (resource != null) {
-                        return resource;
-                    }
-                }
-                return null;
-            };
+            default -> new IndexedResourceFinder(List.copyOf(finders), metrics);
         };
     }
+
+    /**
+     * Wraps a mount so that its hits, misses, bytes read and latencies are recorded for it in {@code metrics}, and
+     * emitted as JFR events.
+     */
+    static ResourceFinder metered(ResourceFinder finder, ResourceMetrics metrics) {
+        return new MeteredResourceFinder(finder, metrics.forMount(finder));
+    }
+
+    /**
+     * Wraps a finder with an in-memory LRU cache holding at most {@code maxBytes} of resources.
+     */
+    static CachingResourceFinder caching(ResourceFinder finder, long maxBytes) {
+        return new CachingResourceFinder(finder, maxBytes);
+    }
 }
@@ -0,0 +1,25 @@
+package io.github.gaming32.stillalive.source;
+
+public record ResourceKey(String directory, String name, String extension) {
+    @Override
+    public String toString() {
+        final String fileName = extension.isEmpty() ? name : name + '.' + extension;
+        return directory.isEmpty() ? fileName : directory + '/' + fileName;
+    }
+
+    /**
+     * A well-mixed 64-bit hash of a key, for indices that don't keep the key itself.
+     */
+    static long hash(String directory, String name, String extension) {
+        long hash = directory.hashCode();
+        hash = hash * 0x9E3779B97F4A7C15L + name.hashCode();
+        hash = hash * 0x9E3779B97F4A7C15L + extension.hashCode();
+        // fmix64 from MurmurHash3
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.gaming32.stillalive.source;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.github.gaming32.stillalive.ResourceLookup")
+@Label("Resource Lookup")
+@Description("A lookup through a sequential or indexed resource finder")
+@Category({"Still Alive", "Resources"})
+@StackTrace(false)
+class ResourceLookupEvent extends Event {
+    @Label("Resource")
+    String resource;
+
+    @Label("Hit")
+    boolean hit;
+
+    @Label("Probe Depth")
+    @Description("Number of mounts probed")
+    int probeDepth;
+}
@@ -0,0 +1,101 @@
+package io.github.gaming32.stillalive.source;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-mount lookup statistics, plus the number of mounts probed by each lookup through a sequential or
+ * indexed finder. Pass it to {@link MountOptions#withMetrics} to instrument a whole game.
+ */
+public final class ResourceMetrics {
+    private static final int MAX_DEPTH = 64;
+
+    private final Map<ResourceFinder, MountStats> mounts = new IdentityHashMap<>();
+    private final List<MountStats> mountOrder = new ArrayList<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final AtomicLongArray probeDepths = new AtomicLongArray(MAX_DEPTH + 1);
+
+    /**
+     * Returns the stats of a mount, which are kept per mount instance rather than by name, since different mounts can
+     * have the same name and a mount's name can change as it loads. Stats are named after the mount when they're
+     * created.
+     */
+    public synchronized MountStats forMount(ResourceFinder mount) {
+        return mounts.computeIfAbsent(mount, key -> {
+            final MountStats stats = new MountStats(key.toString());
+            mountOrder.add(stats);
+            return stats;
+        });
+    }
+
+    /**
+     * Returns the stats of every mount, in the order they were first instrumented.
+     */
+    public synchronized List<MountStats> getMounts() {
+        return List.copyOf(mountOrder);
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the probe depth histogram, where element {@code i} counts lookups that probed {@code i} mounts. The last
+     * element also counts deeper lookups.
+     */
+    public long[] getProbeDepthHistogram() {
+        final long[] result = new long[MAX_DEPTH + 1];
+        for (int i = 0; i <= MAX_DEPTH; i++) {
+            result[i] = probeDepths.get(i);
+        }
+        return result;
+    }
+
+    public double getAverageProbeDepth() {
+        final long[] histogram = getProbeDepthHistogram();
+        long total = 0;
+        long weighted = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            total += histogram[i];
+            weighted += i * histogram[i];
+        }
+        return total > 0 ? (double)weighted / total : 0;
+    }
+
+    void recordLookup(String directory, String name, String extension, int depth, boolean hit) {
+        lookups.increment();
+        if (hit) {
+            hits.increment();
+        }
+        probeDepths.incrementAndGet(Math.min(depth, MAX_DEPTH));
+
+        final ResourceLookupEvent event = new ResourceLookupEvent();
+        if (event.shouldCommit()) {
+            event.resource = new ResourceKey(directory, name, extension).toString();
+            event.hit = hit;
+            event.probeDepth = depth;
+            event.commit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder()
+            .append(getLookups()).append(" lookups, ")
+            .append(getHits()).append(" hits, average probe depth ")
+            .append(String.format("%.2f", getAverageProbeDepth()));
+        for (final MountStats stats : getMounts()) {
+            result.append(System.lineSeparator()).append("  ").append(stats);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.gaming32.stillalive.source;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class ResourcePrefetcher {
+    private static final int PAGE_SIZE = 4096;
+
+    static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "ResourcePrefetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ResourcePrefetcher() {
+    }
+
+    static Map<ResourceKey, CompletableFuture<@Nullable ByteBuffer>> prefetch(
+        ResourceFinder finder, Collection<ResourceKey> keys, Executor executor
+    ) {
+        final Map<ResourceKey, CompletableFuture<@Nullable ByteBuffer>> result = new LinkedHashMap<>();
+        for (final ResourceKey key : keys) {
+            if (result.containsKey(key)) continue;
+            final CompletableFuture<@Nullable ByteBuffer> future = new CompletableFuture<>();
+            result.put(key, future);
+            executor.execute(() -> {
+                try {
+                    final ByteBuffer resource = finder.findResourceBuffer(key.directory(), key.name(), key.extension());
+                    if (resource != null) {
+                        touch(resource);
+                    }
+                    future.complete(resource);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        }
+        return result;
+    }
+
+    // Mapped buffers are read lazily, so fault every page in now, off the caller's thread
+    private static void touch(ByteBuffer buffer) {
+        if (!buffer.isDirect()) return;
+        final int end = buffer.limit();
+        for (int i = buffer.position(); i < end; i += PAGE_SIZE) {
+            buffer.get(i);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.gaming32.stillalive.source;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * One of the lookup methods of {@link ResourceFinder}, applied to a given finder.
+ */
+@FunctionalInterface
+interface ResourceProbe<T> {
+    @Nullable T probe(ResourceFinder finder) throws IOException;
+}
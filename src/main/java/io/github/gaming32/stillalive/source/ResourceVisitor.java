@@ -0,0 +1,9 @@
+package io.github.gaming32.stillalive.source;
+
+/**
+ * Receives the resources listed by {@link ResourceFinder#visitResources}, without a key object per resource.
+ */
+@FunctionalInterface
+public interface ResourceVisitor {
+    void visit(String directory, String name, String extension);
+}
@@ -0,0 +1,74 @@
+package io.github.gaming32.stillalive.source;
+
+import io.github.gaming32.stillalive.util.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+final class SequentialResourceFinder implements ResourceFinder {
+    private final List<ResourceFinder> finders;
+    private final @Nullable ResourceMetrics metrics;
+
+    SequentialResourceFinder(List<ResourceFinder> finders, @Nullable ResourceMetrics metrics) {
+        this.finders = finders;
+        this.metrics = metrics;
+    }
+
+    List<ResourceFinder> getFinders() {
+        return finders;
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        return find(directory, name, extension, finder -> finder.findResource(directory, name, extension));
+    }
+
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        return find(directory, name, extension, finder -> finder.findResourceBuffer(directory, name, extension));
+    }
+
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        return find(directory, name, extension, finder -> finder.openResource(directory, name, extension));
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        for (final ResourceFinder finder : finders) {
+            if (finder.mightContain(directory, name, extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Util.closeAll(finders);
+    }
+
+    private <T> @Nullable T find(String directory, String name, String extension, ResourceProbe<T> probe) throws IOException {
+        int depth = 0;
+        for (final ResourceFinder finder : finders) {
+            if (!finder.mightContain(directory, name, extension)) continue;
+            depth++;
+            final T resource = probe.probe(finder);
+            if (resource != null) {
+                recordLookup(directory, name, extension, depth, true);
+                return resource;
+            }
+        }
+        recordLookup(directory, name, extension, depth, false);
+        return null;
+    }
+
+    private void recordLookup(String directory, String name, String extension, int depth, boolean hit) {
+        if (metrics != null) {
+            metrics.recordLookup(directory, name, extension, depth, hit);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package io.github.gaming32.stillalive.source;
 
-import com.connorhaigh.javavpk.core.Archive;
-import com.connorhaigh.javavpk.core.Entry;
+import com.connorhaigh.javavpk.core.IndexCache;
 import com.connorhaigh.javavpk.exceptions.ArchiveException;
 import com.connorhaigh.javavpk.exceptions.EntryException;
 import io.github.gaming32.stillalive.util.Util;
@@ -10,25 +9,46 @@ import net.platinumdigitalgroup.jvdf.VDFParser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class SourceMounts {
     private static final String GAMEINFO_PATH = "|gameinfo_path|";
     private static final String ALL_SOURCE_ENGINE_PATHS = "|all_source_engine_paths|";
+    private static final IndexCache INDEX_CACHE = new IndexCache(Util.CACHE_DIR.resolve("vpk-index").toFile());
+    private static final int MOUNT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final ThreadFactory MOUNT_THREAD_FACTORY = runnable -> {
+        final Thread thread = new Thread(runnable, "SourceMounts");
+        thread.setDaemon(true);
+        return thread;
+    };
 
     public static ResourceFinder mountDirectory(Path dir) {
-        return (directory, name, extension) -> {
-            final Path file = dir.resolve(directory).resolve(name + '.' + extension);
-            return Files.exists(file) ? Files.readAllBytes(file) : null;
-        };
+        return new DirectoryMount(dir);
+    }
+
+    public static ResourceFinder mountDirectory(Path dir, MountOptions options) throws IOException {
+        if (options.watchDirectories()) {
+            return new WatchedDirectoryMount(dir, options.caseInsensitive());
+        }
+        return new DirectoryMount(dir);
     }
 
     public static ResourceFinder mountVpk(File vpkPath) throws IOException {
+        return mountVpk(vpkPath, MountOptions.DEFAULT);
+    }
+
+    public static ResourceFinder mountVpk(File vpkPath, MountOptions options) throws IOException {
         final String vpkName = vpkPath.getName();
         if (!vpkName.endsWith(".vpk")) {
             throw new IllegalArgumentException(vpkPath + " doesn't have .vpk extension");
@@ -37,72 +57,156 @@ public class SourceMounts {
         if (!dirPath.isFile()) {
             return ResourceFinder.NULL;
         }
+        if (options.lazyVpks()) {
+            return new LazyVpkMount(dirPath, INDEX_CACHE);
+        }
         try {
-            final Archive archive = new Archive(dirPath);
-            archive.load();
-            return (directory, name, extension) -> {
-                final Entry entry = Util.findEntry(archive, directory, name, extension);
-                if (entry == null) {
-                    return null;
-                }
-                try {
-                    return entry.readData();
-                } catch (ArchiveException e) {
-                    throw new IOException(e);
-                }
-            };
+            return new VpkMount(INDEX_CACHE.load(dirPath));
         } catch (ArchiveException | EntryException e) {
             throw new IOException(e);
         }
     }
 
     public static ResourceFinder mountPath(Path path) throws IOException {
+        return mountPath(path, MountOptions.DEFAULT);
+    }
+
+    public static ResourceFinder mountPath(Path path, MountOptions options) throws IOException {
         if (path.toString().endsWith(".vpk")) {
-            final ResourceFinder result = mountVpk(path.toFile());
+            final ResourceFinder result = mountVpk(path.toFile(), options);
             if (result != ResourceFinder.NULL) {
                 return result;
             }
         }
-        return mountDirectory(path);
+        return mountDirectory(path, options);
     }
 
     public static ResourceFinder mountGame(Path engineDir, Path gameDir) throws IOException {
-        return ResourceFinder.sequential(getGameMounts(engineDir, gameDir));
+        return mountGame(engineDir, gameDir, MountOptions.DEFAULT);
+    }
+
+    public static ResourceFinder mountGame(Path engineDir, Path gameDir, MountOptions options) throws IOException {
+        return ResourceFinder.indexed(getGameMounts(engineDir, gameDir, options), options.metrics());
+    }
+
+    /**
+     * Counts the VPKs that have actually been loaded, looking through merged and sequential finders.
+     */
+    public static int countLoaded(ResourceFinder finder) {
+        if (finder instanceof LazyVpkMount lazy) {
+            return lazy.isLoaded() ? 1 : 0;
+        }
+        if (finder instanceof VpkMount) {
+            return 1;
+        }
+        if (finder instanceof CachingResourceFinder caching) {
+            return countLoaded(caching.getDelegate());
+        }
+        if (finder instanceof MeteredResourceFinder metered) {
+            return countLoaded(metered.getDelegate());
+        }
+        final List<ResourceFinder> children;
+        if (finder instanceof IndexedResourceFinder indexed) {
+            children = indexed.getFinders();
+        } else if (finder instanceof SequentialResourceFinder sequential) {
+            children = sequential.getFinders();
+        } else {
+            return 0;
+        }
+        int result = 0;
+        for (final ResourceFinder child : children) {
+            result += countLoaded(child);
+        }
+        return result;
     }
 
+    /**
+     * Mounts every search path of a game, in priority order. Archives are loaded concurrently on a bounded pool, since
+     * mounting is I/O-bound.
+     */
     public static List<ResourceFinder> getGameMounts(Path engineDir, Path gameDir) throws IOException {
+        return getGameMounts(engineDir, gameDir, MountOptions.DEFAULT);
+    }
+
+    public static List<ResourceFinder> getGameMounts(Path engineDir, Path gameDir, MountOptions options) throws IOException {
         final VDFNode searchPaths = new VDFParser()
             .parse(Files.readString(gameDir.resolve("gameinfo.txt"), StandardCharsets.UTF_8))
             .getSubNode("GameInfo")
             .getSubNode("FileSystem")
             .getSubNode("SearchPaths");
-        final List<ResourceFinder> result = new ArrayList<>(searchPaths.getEntryList().size());
-        for (final var entry : searchPaths.getEntryList()) {
-            String target = ((String)entry.getValue());
-            boolean allInDirectory = target.endsWith("/*");
-            if (allInDirectory) {
-                target = target.substring(0, target.length() - 2);
-            }
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(searchPaths.getEntryList().size(), MOUNT_THREADS)), MOUNT_THREAD_FACTORY
+        );
+        try {
+            // Expand search paths
+            final List<Future<List<Path>>> expanded = new ArrayList<>(searchPaths.getEntryList().size());
+            for (final var entry : searchPaths.getEntryList()) {
+                String target = ((String)entry.getValue());
+                final boolean allInDirectory = target.endsWith("/*");
+                if (allInDirectory) {
+                    target = target.substring(0, target.length() - 2);
+                }
 
-            final Path targetPath;
-            if (target.startsWith(GAMEINFO_PATH)) {
-                targetPath = gameDir.resolve(target.substring(GAMEINFO_PATH.length()));
-            } else if (target.startsWith(ALL_SOURCE_ENGINE_PATHS)) {
-                targetPath = engineDir.resolve(target.substring(ALL_SOURCE_ENGINE_PATHS.length()));
-            } else {
-                targetPath = engineDir.resolve(target);
+                final Path targetPath;
+                if (target.startsWith(GAMEINFO_PATH)) {
+                    targetPath = gameDir.resolve(target.substring(GAMEINFO_PATH.length()));
+                } else if (target.startsWith(ALL_SOURCE_ENGINE_PATHS)) {
+                    targetPath = engineDir.resolve(target.substring(ALL_SOURCE_ENGINE_PATHS.length()));
+                } else {
+                    targetPath = engineDir.resolve(target);
+                }
+
+                expanded.add(executor.submit(() -> allInDirectory ? listDirectory(targetPath) : List.of(targetPath)));
             }
 
-            if (!allInDirectory) {
-                result.add(mountPath(targetPath));
-            } else if (Files.exists(targetPath)) {
-                try (DirectoryStream<Path> stream = Files.newDirectoryStream(targetPath)) {
-                    for (final Path path : stream) {
-                        result.add(mountPath(path));
-                    }
+            // Mount, keeping search path order
+            final List<Future<ResourceFinder>> mounts = new ArrayList<>();
+            for (final Future<List<Path>> paths : expanded) {
+                for (final Path path : await(paths)) {
+                    mounts.add(executor.submit(() -> mountPath(path, options)));
                 }
             }
+            final List<ResourceFinder> result = new ArrayList<>(mounts.size());
+            for (final Future<ResourceFinder> mount : mounts) {
+                result.add(meter(await(mount), options));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ResourceFinder meter(ResourceFinder mount, MountOptions options) {
+        return options.metrics() != null ? ResourceFinder.metered(mount, options.metrics()) : mount;
+    }
+
+    private static List<Path> listDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return List.of();
+        }
+        final List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path path : stream) {
+                result.add(path);
+            }
         }
         return result;
     }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Mounting interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package io.github.gaming32.stillalive.source;
+
+import com.connorhaigh.javavpk.core.Archive;
+import com.connorhaigh.javavpk.core.Entry;
+import com.connorhaigh.javavpk.exceptions.ArchiveException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class VpkMount implements ResourceFinder {
+    private final Archive archive;
+    private final BloomFilter filter;
+
+    public VpkMount(Archive archive) {
+        this.archive = archive;
+        this.filter = createFilter(archive);
+    }
+
+    static BloomFilter createFilter(Archive archive) {
+        final int[] count = new int[1];
+        archive.visitEntries((directory, name, extension) -> count[0]++);
+        final BloomFilter result = new BloomFilter(count[0]);
+        archive.visitEntries(result::add);
+        return result;
+    }
+
+    public Archive getArchive() {
+        return archive;
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        final Entry entry = archive.findEntry(directory, name, extension);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return entry.readData();
+        } catch (ArchiveException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Maps just the entry's range of the child archive, except for entries split with preload data.
+     */
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        final Entry entry = archive.findEntry(directory, name, extension);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return entry.mapData();
+        } catch (ArchiveException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) {
+        final Entry entry = archive.findEntry(directory, name, extension);
+        return entry != null ? entry.openStream() : null;
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        return filter.mightContain(directory, name, extension);
+    }
+
+    @Override
+    public boolean visitResources(ResourceVisitor visitor) {
+        archive.visitEntries(visitor::visit);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+
+    @Override
+    public String toString() {
+        return "VpkMount[" + archive.getFile() + "]";
+    }
+}
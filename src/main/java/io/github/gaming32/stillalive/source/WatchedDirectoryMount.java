@@ -0,0 +1,236 @@
+package io.github.gaming32.stillalive.source;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchKey;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A loose directory mount that keeps listings of the directories it has looked in, kept current by a shared
+ * {@link DirectoryWatcher}. Directories are only listed and watched once a lookup reaches them, so watches are spent on
+ * the directories a game actually uses rather than the whole tree. Lookups never touch the filesystem unless they hit
+ * or reach a directory that isn't listed yet.
+ * <p>
+ * Any change in a directory drops its listing, and the listings below the changed entry, to be listed again on the
+ * next lookup. Directories that can't be watched, such as once the system's watch limit is reached, are listed on
+ * every lookup instead.
+ */
+public class WatchedDirectoryMount implements ResourceFinder {
+    private final Path dir;
+    private final boolean caseInsensitive;
+    private final DirectoryWatcher watcher;
+    private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public WatchedDirectoryMount(Path dir, boolean caseInsensitive) throws IOException {
+        this.dir = dir;
+        this.caseInsensitive = caseInsensitive;
+        this.watcher = DirectoryWatcher.forFileSystem(dir.getFileSystem());
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public boolean isCaseInsensitive() {
+        return caseInsensitive;
+    }
+
+    @Override
+    public byte @Nullable [] findResource(String directory, String name, String extension) throws IOException {
+        final Path file = resolve(directory, name, extension);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public @Nullable ByteBuffer findResourceBuffer(String directory, String name, String extension) throws IOException {
+        final Path file = resolve(directory, name, extension);
+        if (file == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public @Nullable InputStream openResource(String directory, String name, String extension) throws IOException {
+        final Path file = resolve(directory, name, extension);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return Files.newInputStream(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean mightContain(String directory, String name, String extension) {
+        return resolve(directory, name, extension) != null;
+    }
+
+    /**
+     * The listings change over time and only cover directories that have been looked in, so watched mounts stay out
+     * of merged indices.
+     */
+    @Override
+    public boolean visitResources(ResourceVisitor visitor) {
+        return false;
+    }
+
+    /**
+     * Cancels the mount's watches and drops its listings. Lookups afterwards still work, but list directories every
+     * time.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        listings.values().forEach(Listing::invalidate);
+    }
+
+    private @Nullable Path resolve(String directory, String name, String extension) {
+        Listing listing = getListing("", dir);
+        final StringBuilder relative = new StringBuilder();
+        for (final String component : directory.split("/")) {
+            if (component.isEmpty()) continue;
+            final String normalized = normalize(component);
+            final Path subdir = listing.dirs.get(normalized);
+            if (subdir == null) {
+                return null;
+            }
+            if (!relative.isEmpty()) {
+                relative.append('/');
+            }
+            relative.append(normalized);
+            listing = getListing(relative.toString(), subdir);
+        }
+        return listing.files.get(normalize(extension.isEmpty() ? name : name + '.' + extension));
+    }
+
+    private Listing getListing(String relative, Path path) {
+        final Listing existing = listings.get(relative);
+        if (existing != null) {
+            return existing;
+        }
+        final Listing listing = new Listing(relative, path);
+        if (!listing.isCacheable() || closed) {
+            listing.invalidate();
+            return listing;
+        }
+        final Listing raced = listings.putIfAbsent(relative, listing);
+        if (raced != null) {
+            listing.invalidate();
+            return raced;
+        }
+        // A change or close while listing may have missed the map, so check again now that the listing is in it
+        if (listing.invalidated.get() || closed) {
+            listings.remove(relative, listing);
+            listing.invalidate();
+        }
+        return listing;
+    }
+
+    private void invalidateTree(String relative) {
+        final String prefix = relative + '/';
+        listings.forEach((key, listing) -> {
+            if (relative.isEmpty() || key.equals(relative) || key.startsWith(prefix)) {
+                listing.invalidate();
+            }
+        });
+    }
+
+    private String normalize(String name) {
+        return caseInsensitive ? name.toLowerCase(Locale.ROOT) : name;
+    }
+
+    @Override
+    public String toString() {
+        return "WatchedDirectoryMount[" + dir + "]";
+    }
+
+    private final class Listing implements DirectoryWatcher.Listener {
+        final String relative;
+        final Map<String, Path> files = new HashMap<>();
+        final Map<String, Path> dirs = new HashMap<>();
+        final AtomicBoolean invalidated = new AtomicBoolean();
+        private final @Nullable WatchKey key;
+        private boolean complete;
+
+        // The directory is registered before it's listed, so entries created mid-listing aren't missed
+        Listing(String relative, Path path) {
+            this.relative = relative;
+            WatchKey key;
+            try {
+                key = watcher.register(path, this);
+            } catch (IOException e) {
+                key = null;
+            }
+            this.key = key;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (final Path child : stream) {
+                    final BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    final Map<String, Path> target = attrs.isDirectory() ? dirs : attrs.isRegularFile() ? files : null;
+                    if (target != null) {
+                        target.putIfAbsent(normalize(child.getFileName().toString()), child);
+                    }
+                }
+                complete = true;
+            } catch (IOException e) {
+                // Missing or unreadable, so it's treated as empty until it can be listed
+            }
+        }
+
+        boolean isCacheable() {
+            return key != null && complete;
+        }
+
+        @Override
+        public void changed(@Nullable Path name) {
+            if (name == null) {
+                invalidateTree(relative);
+                return;
+            }
+            invalidate();
+            final String child = normalize(name.toString());
+            invalidateTree(relative.isEmpty() ? child : relative + '/' + child);
+        }
+
+        void invalidate() {
+            if (!invalidated.compareAndSet(false, true)) return;
+            listings.remove(relative, this);
+            if (key != null) {
+                watcher.cancel(key, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.gaming32.stillalive.steam;
+
+import net.platinumdigitalgroup.jvdf.VDFBinaryReader;
+import net.platinumdigitalgroup.jvdf.VDFNode;
+import net.platinumdigitalgroup.jvdf.VDFParseException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Steam's cache of app metadata, {@code appcache/appinfo.vdf}. Opening it only indexes the app entries; the binary
+ * KeyValues of an app are decoded when it's looked up.
+ */
+public class AppInfo {
+    private static final int MAGIC_V27 = 0x07564427;
+    private static final int MAGIC_V28 = 0x07564428;
+    private static final int MAGIC_V29 = 0x07564429;
+
+    private static final int SHA1_LENGTH = 20;
+
+    private final ByteBuffer data;
+    private final int version;
+    private final String @Nullable [] keyTable;
+    private final Map<Integer, Entry> entries = new LinkedHashMap<>();
+    private final VDFBinaryReader reader = new VDFBinaryReader();
+
+    public AppInfo(ByteBuffer data) throws IOException {
+        this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            final int magic = this.data.getInt();
+            version = switch (magic) {
+                case MAGIC_V27 -> 27;
+                case MAGIC_V28 -> 28;
+                case MAGIC_V29 -> 29;
+                default -> throw new IOException("Unsupported appinfo.vdf magic 0x" + Integer.toHexString(magic));
+            };
+            this.data.getInt(); // Universe
+
+            int end = this.data.limit();
+            if (version >= 29) {
+                end = Math.toIntExact(this.data.getLong());
+                keyTable = readKeyTable(end);
+            } else {
+                keyTable = null;
+            }
+
+            while (this.data.position() < end) {
+                final int appId = this.data.getInt();
+                if (appId == 0) {
+                    break;
+                }
+                final int size = this.data.getInt();
+                final int entryEnd = this.data.position() + size;
+
+                this.data.getInt(); // Info state
+                final long lastUpdated = Integer.toUnsignedLong(this.data.getInt());
+                this.data.getLong(); // PICS token
+                this.data.position(this.data.position() + SHA1_LENGTH);
+                final int changeNumber = this.data.getInt();
+                if (version >= 28) {
+                    this.data.position(this.data.position() + SHA1_LENGTH); // Binary data SHA-1
+                }
+
+                entries.put(appId, new Entry(changeNumber, lastUpdated, this.data.position(), entryEnd));
+                this.data.position(entryEnd);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed appinfo.vdf", e);
+        }
+    }
+
+    public static AppInfo read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new AppInfo(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Set<Integer> getAppIds() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public int getChangeNumber(int appId) {
+        final Entry entry = entries.get(appId);
+        return entry != null ? entry.changeNumber : -1;
+    }
+
+    /**
+     * @return The last time the app's metadata was updated, in seconds since the epoch, or -1 if the app is unknown
+     */
+    public long getLastUpdated(int appId) {
+        final Entry entry = entries.get(appId);
+        return entry != null ? entry.lastUpdated : -1;
+    }
+
+    /**
+     * @return The {@code appinfo} node of an app, which holds sections like {@code common} and {@code config}, or
+     * {@code null} if the app is unknown
+     * @throws VDFParseException If the app's entry is malformed
+     */
+    public synchronized @Nullable VDFNode getApp(int appId) {
+        final Entry entry = entries.get(appId);
+        if (entry == null) {
+            return null;
+        }
+        final VDFNode root = reader.read(data.duplicate().limit(entry.dataEnd).position(entry.dataStart), keyTable);
+        return root.containsKey("appinfo") ? root.getSubNode("appinfo") : root;
+    }
+
+    private String[] readKeyTable(int offset) {
+        final ByteBuffer table = data.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(offset);
+        final String[] keys = new String[table.getInt()];
+        for (int i = 0; i < keys.length; i++) {
+            final int start = table.position();
+            int end = start;
+            while (table.get(end) != 0) {
+                end++;
+            }
+            final byte[] key = new byte[end - start];
+            table.get(key).get();
+            keys[i] = new String(key, StandardCharsets.UTF_8);
+        }
+        return keys;
+    }
+
+    private record Entry(int changeNumber, long lastUpdated, int dataStart, int dataEnd) {
+    }
+}
@@ -7,22 +7,28 @@ import com.sun.jna.platform.win32.WinError;
 import com.sun.jna.platform.win32.WinReg;
 import io.github.gaming32.stillalive.util.Util;
 import net.platinumdigitalgroup.jvdf.VDFNode;
-import net.platinumdigitalgroup.jvdf.VDFParser;
+import net.platinumdigitalgroup.jvdf.VDFParseException;
+import net.platinumdigitalgroup.jvdf.VDFReader;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 public class SteamUtil {
     public static final Path STEAM_DIR = Platform.isWindows() ? findWindowsSteamDir() : findPosixSteamDir();
 
-    private static final VDFParser VDF_PARSER = new VDFParser();
-    private static final VDFNode LIBRARY_FOLDERS = Util.map(STEAM_DIR, steamDir -> {
+    private static final List<Library> LIBRARY_FOLDERS = Util.map(STEAM_DIR, steamDir -> {
         try {
-            return readVdf(steamDir.resolve("steamapps/libraryfolders.vdf")).getSubNode("libraryfolders");
+            return readLibraryFolders(steamDir.resolve("steamapps/libraryfolders.vdf"));
         } catch (Exception e) {
             System.err.println("Failed to read libraryfolders.vdf");
             e.printStackTrace();
@@ -37,10 +43,9 @@ public class SteamUtil {
         final String gameIdStr = Integer.toString(gameId);
 
         Path libraryPath = null;
-        for (int i = 0; i < LIBRARY_FOLDERS.size(); i++) {
-            final VDFNode library = LIBRARY_FOLDERS.getSubNode(Integer.toString(i));
-            if (library.getSubNode("apps").containsKey(gameIdStr)) {
-                libraryPath = Path.of(library.getString("path"));
+        for (final Library library : LIBRARY_FOLDERS) {
+            if (library.apps().contains(gameIdStr)) {
+                libraryPath = library.path();
                 break;
             }
         }
@@ -48,19 +53,80 @@ public class SteamUtil {
             return null;
         }
 
-        final VDFNode manifest;
+        String relativeGamePath;
         try {
-            manifest = readVdf(libraryPath.resolve("steamapps/appmanifest_" + gameIdStr + ".acf"));
+            final VDFReader manifest = readVdf(libraryPath.resolve("steamapps/appmanifest_" + gameIdStr + ".acf"));
+            relativeGamePath = manifest.findObject("AppState") ? manifest.findValue("installdir") : null;
+        } catch (NoSuchFileException e) {
+            relativeGamePath = null;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        final String relativeGamePath = manifest.getSubNode("AppState").getString("installdir");
+        if (relativeGamePath == null) {
+            // Steam's own metadata cache also knows where each app installs to
+            relativeGamePath = findAppInfoInstallDir(gameId);
+            if (relativeGamePath == null) {
+                return null;
+            }
+        }
 
         return libraryPath.resolve("steamapps/common").resolve(relativeGamePath);
     }
 
-    private static VDFNode readVdf(Path path) throws IOException {
-        return VDF_PARSER.parse(Files.readAllLines(path).toArray(String[]::new));
+    private static @Nullable String findAppInfoInstallDir(int gameId) {
+        final Path path = STEAM_DIR.resolve("appcache/appinfo.vdf");
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            final VDFNode app = AppInfo.read(path).getApp(gameId);
+            final VDFNode config = app != null ? app.getSubNode("config") : null;
+            return config != null ? config.getString("installdir") : null;
+        } catch (IOException | VDFParseException e) {
+            System.err.println("Failed to read appinfo.vdf");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static List<Library> readLibraryFolders(Path path) throws IOException {
+        final VDFReader reader = readVdf(path);
+        final List<Library> libraries = new ArrayList<>();
+        if (!reader.findObject("libraryfolders")) {
+            return libraries;
+        }
+
+        // Only the path and app IDs of each library are needed, so everything else is skipped
+        while (reader.next() == VDFReader.Event.KEY) {
+            if (reader.next() != VDFReader.Event.BEGIN_OBJECT) {
+                continue;
+            }
+            String libraryPath = null;
+            final Set<String> apps = new HashSet<>();
+            while (reader.next() == VDFReader.Event.KEY) {
+                final String key = reader.getText();
+                if (key.equals("path") && reader.next() == VDFReader.Event.VALUE) {
+                    if (libraryPath == null) {
+                        libraryPath = reader.getText();
+                    }
+                } else if (key.equals("apps") && reader.next() == VDFReader.Event.BEGIN_OBJECT) {
+                    while (reader.next() == VDFReader.Event.KEY) {
+                        apps.add(reader.getText());
+                        reader.skip();
+                    }
+                } else {
+                    reader.skip();
+                }
+            }
+            if (libraryPath != null) {
+                libraries.add(new Library(Path.of(libraryPath), apps));
+            }
+        }
+        return libraries;
+    }
+
+    private static VDFReader readVdf(Path path) throws IOException {
+        return new VDFReader(Files.readAllBytes(path), StandardCharsets.UTF_8);
     }
 
     private static Path findWindowsSteamDir() {
@@ -93,4 +159,7 @@ public class SteamUtil {
                 return null;
             });
     }
+
+    private record Library(Path path, Set<String> apps) {
+    }
 }
@@ -1,32 +1,43 @@
 package io.github.gaming32.stillalive.util;
 
-import com.connorhaigh.javavpk.core.Archive;
-import com.connorhaigh.javavpk.core.Directory;
-import com.connorhaigh.javavpk.core.Entry;
+import com.sun.jna.Platform;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.List;
+import java.nio.file.Path;
 import java.util.function.Function;
 
 public class Util {
     public static final BigDecimal TO_MILLIS = BigDecimal.valueOf(1000L);
+    public static final Path CACHE_DIR = findCacheDir().resolve("still-alive");
 
     @Contract("null, _ -> null")
     public static <T, R> @Nullable R map(@Nullable T value, Function<T, R> mapper) {
         return value != null ? mapper.apply(value) : null;
     }
 
-    public static Entry findEntry(Archive archive, String directory, String name, String extension) {
-        return archive.getDirectories()
-            .stream()
-            .filter(d -> d.getPath().equals(directory))
-            .map(Directory::getEntries)
-            .flatMap(List::stream)
-            .filter(e -> e.getFileName().equals(name) && e.getExtension().equals(extension))
-            .findFirst()
-            .orElse(null);
+    /**
+     * Closes every closeable, even if some fail. The first failure is thrown, with the rest suppressed.
+     */
+    public static void closeAll(Iterable<? extends Closeable> closeables) throws IOException {
+        IOException failure = null;
+        for (final Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     public static void startThread(String name, ThrowableRunnable action) {
@@ -43,4 +54,17 @@ public class Util {
         thread.setDaemon(true);
         thread.start();
     }
+
+    private static Path findCacheDir() {
+        final Path home = Path.of(System.getProperty("user.home"));
+        if (Platform.isWindows()) {
+            final String localAppData = System.getenv("LOCALAPPDATA");
+            return localAppData != null ? Path.of(localAppData) : home.resolve("AppData/Local");
+        }
+        if (Platform.isMac()) {
+            return home.resolve("Library/Caches");
+        }
+        final String xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+        return xdgCacheHome != null && !xdgCacheHome.isEmpty() ? Path.of(xdgCacheHome) : home.resolve(".cache");
+    }
 }
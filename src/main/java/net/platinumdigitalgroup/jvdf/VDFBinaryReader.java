@@ -0,0 +1,295 @@
+package net.platinumdigitalgroup.jvdf;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads binary VDF (binary KeyValues) documents, such as Steam's shortcuts.vdf or the entries of appinfo.vdf, into
+ * VDF nodes.
+ * <p>
+ * {@link VDFNode} only holds strings and subnodes, so numbers and colors are stored as strings that the node's typed
+ * getters can read back. The type of every value is recorded by key name, so that {@link VDFBinaryWriter} can write
+ * the same types back.
+ * <p>
+ * Documents tend to repeat the same few keys many times, so keys are interned. Each distinct key is decoded once for
+ * the lifetime of the reader, however many documents it reads. Readers are not thread-safe.
+ */
+public class VDFBinaryReader {
+
+    /**
+     * The deepest nesting of nodes a document may have. Nodes are read recursively, so this keeps malformed documents
+     * from overflowing the stack.
+     */
+    private static final int MAX_DEPTH = 256;
+
+    /**
+     * The types of values read so far, by key name.
+     */
+    private final Map<String, VDFBinaryType> types = new HashMap<>();
+
+    /**
+     * Open-addressed table of the keys read so far, matched by their encoded bytes.
+     */
+    private byte[][] keyBytes = new byte[256][];
+    private String[] keyStrings = new String[256];
+    private int[] keyHashes = new int[256];
+    private int keyCount;
+
+    /**
+     * Scratch space for decoding strings from buffers without an accessible array.
+     */
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Reads a binary VDF document from a byte array.
+     * @param data the document
+     * @return a VDFNode which represents the root of the document
+     */
+    public VDFNode read(byte[] data) {
+        return read(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Reads a binary VDF document from a buffer. The document ends at the end of its root node or at the limit of the
+     * buffer, and the buffer's position is moved past it.
+     * @param buffer the buffer to read from
+     * @return a VDFNode which represents the root of the document
+     */
+    public VDFNode read(ByteBuffer buffer) {
+        return read(buffer, null);
+    }
+
+    /**
+     * Reads a binary VDF document whose keys are stored as indices into a table of strings, as in version 29 and later
+     * of appinfo.vdf.
+     * @param buffer the buffer to read from
+     * @param keyTable the strings that keys index, or null if keys are stored as strings
+     * @return a VDFNode which represents the root of the document
+     * @throws VDFParseException if the document is malformed, or nests nodes more than 256 deep
+     */
+    public VDFNode read(ByteBuffer buffer, String[] keyTable) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        VDFNode root = new VDFNode();
+        try {
+            readNode(in, root, keyTable, 0);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new VDFParseException("Truncated or malformed binary VDF document at " + in.position());
+        }
+        buffer.position(in.position());
+        return root;
+    }
+
+    /**
+     * Returns the types of values read so far, by key name. Keys that are read with more than one type keep the first
+     * type they were read with, and {@link VDFBinaryWriter} writes the values that don't fit it as strings.
+     * @return the value types
+     */
+    public Map<String, VDFBinaryType> getTypes() {
+        return Collections.unmodifiableMap(types);
+    }
+
+    /**
+     * Reads the entries of a node up to its end marker.
+     * @param in the buffer, positioned at the first entry
+     * @param node the node to add entries to
+     * @param keyTable the strings that keys index, or null
+     * @param depth how many nodes this node is nested in, 0 for the root node, which may also end at the end of the buffer
+     */
+    private void readNode(ByteBuffer in, VDFNode node, String[] keyTable, int depth) {
+        while (true) {
+            if (depth == 0 && !in.hasRemaining())
+                return;
+
+            int id = in.get() & 0xFF;
+            VDFBinaryType type = VDFBinaryType.byId(id);
+            if (type == null)
+                throw new VDFParseException("Unknown binary VDF type 0x" + Integer.toHexString(id) + " at " + (in.position() - 1));
+            if (type == VDFBinaryType.END || type == VDFBinaryType.ALTERNATE_END)
+                return;
+
+            String key = keyTable != null ? keyTable[in.getInt()] : readKey(in);
+            switch (type) {
+                case NONE:
+                    if (depth == MAX_DEPTH)
+                        throw new VDFParseException("Binary VDF document nested too deeply at " + in.position());
+                    VDFNode child = new VDFNode();
+                    readNode(in, child, keyTable, depth + 1);
+                    node.put(key, child);
+                    break;
+                case STRING:
+                    node.put(key, readString(in));
+                    break;
+                case INT32:
+                    node.put(key, Integer.toString(in.getInt()));
+                    break;
+                case FLOAT32:
+                    node.put(key, Float.toString(in.getFloat()));
+                    break;
+                case POINTER:
+                    node.put(key, Integer.toHexString(in.getInt()));
+                    break;
+                case WIDE_STRING:
+                    node.put(key, readWideString(in));
+                    break;
+                case COLOR:
+                    node.put(key, (in.get() & 0xFF) + " " + (in.get() & 0xFF) + " " + (in.get() & 0xFF) + " " + (in.get() & 0xFF));
+                    break;
+                case UINT64:
+                    node.put(key, Long.toUnsignedString(in.getLong()));
+                    break;
+                case INT64:
+                    node.put(key, Long.toString(in.getLong()));
+                    break;
+            }
+            if (type != VDFBinaryType.NONE)
+                types.putIfAbsent(key, type);
+        }
+    }
+
+    /**
+     * Reads a null-terminated UTF-8 key, reusing the string from an earlier read of the same key.
+     * @param in the buffer, positioned at the key
+     * @return the key
+     */
+    private String readKey(ByteBuffer in) {
+        int start = in.position();
+        int hash = 1;
+        int end = start;
+        for (byte b; (b = in.get(end)) != 0; end++)
+            hash = 31 * hash + b;
+        int length = end - start;
+        in.position(end + 1);
+
+        int mask = keyBytes.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            byte[] candidate = keyBytes[slot];
+            if (candidate == null) {
+                byte[] bytes = new byte[length];
+                in.get(start, bytes);
+                String key = new String(bytes, StandardCharsets.UTF_8);
+                addKey(slot, bytes, key, hash);
+                return key;
+            }
+            if (keyHashes[slot] == hash && candidate.length == length && matches(in, start, candidate))
+                return keyStrings[slot];
+        }
+    }
+
+    /**
+     * Adds a key to the key table, growing it once it is half full.
+     * @param slot the free slot for the key
+     * @param bytes the encoded key
+     * @param key the decoded key
+     * @param hash the hash of the encoded key
+     */
+    private void addKey(int slot, byte[] bytes, String key, int hash) {
+        keyBytes[slot] = bytes;
+        keyStrings[slot] = key;
+        keyHashes[slot] = hash;
+        if (++keyCount * 2 <= keyBytes.length)
+            return;
+
+        byte[][] oldBytes = keyBytes;
+        String[] oldStrings = keyStrings;
+        int[] oldHashes = keyHashes;
+        keyBytes = new byte[oldBytes.length * 2][];
+        keyStrings = new String[oldBytes.length * 2];
+        keyHashes = new int[oldBytes.length * 2];
+
+        int mask = keyBytes.length - 1;
+        for (int i = 0; i < oldBytes.length; i++) {
+            if (oldBytes[i] == null)
+                continue;
+            int newSlot = mix(oldHashes[i]) & mask;
+            while (keyBytes[newSlot] != null)
+                newSlot = (newSlot + 1) & mask;
+            keyBytes[newSlot] = oldBytes[i];
+            keyStrings[newSlot] = oldStrings[i];
+            keyHashes[newSlot] = oldHashes[i];
+        }
+    }
+
+    /**
+     * Reads a null-terminated UTF-8 string.
+     * @param in the buffer, positioned at the string
+     * @return the string
+     */
+    private String readString(ByteBuffer in) {
+        int start = in.position();
+        int end = start;
+        while (in.get(end) != 0)
+            end++;
+        in.position(end + 1);
+        return decode(in, start, end - start);
+    }
+
+    /**
+     * Reads a UTF-16LE string terminated by a null character.
+     * @param in the buffer, positioned at the string
+     * @return the string
+     */
+    private String readWideString(ByteBuffer in) {
+        int start = in.position();
+        int end = start;
+        while (in.getChar(end) != 0)
+            end += 2;
+        in.position(end + 2);
+
+        char[] chars = new char[(end - start) / 2];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = in.getChar(start + i * 2);
+        return new String(chars);
+    }
+
+    /**
+     * Decodes UTF-8 bytes from a buffer, straight from its array if it has one.
+     * @param in the buffer
+     * @param start the index of the first byte
+     * @param length the number of bytes
+     * @return the decoded string
+     */
+    private String decode(ByteBuffer in, int start, int length) {
+        if (in.hasArray())
+            return new String(in.array(), in.arrayOffset() + start, length, StandardCharsets.UTF_8);
+
+        if (length > scratch.length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        in.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares bytes in a buffer to a key.
+     * @param in the buffer
+     * @param start the index of the first byte
+     * @param key the encoded key
+     * @return if the bytes match the key
+     */
+    private static boolean matches(ByteBuffer in, int start, byte[] key) {
+        if (in.hasArray()) {
+            int offset = in.arrayOffset() + start;
+            return Arrays.equals(in.array(), offset, offset + key.length, key, 0, key.length);
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (in.get(start + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the bits of a hash over the low bits used for table slots.
+     * @param hash the hash
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,89 @@
+package net.platinumdigitalgroup.jvdf;
+
+/**
+ * The types of entries in binary VDF (binary KeyValues) documents.
+ */
+public enum VDFBinaryType {
+    /**
+     * A subnode, whose entries are followed by {@link #END}.
+     */
+    NONE(0x00),
+    /**
+     * A null-terminated UTF-8 string.
+     */
+    STRING(0x01),
+    /**
+     * A 32-bit signed integer.
+     */
+    INT32(0x02),
+    /**
+     * A 32-bit float.
+     */
+    FLOAT32(0x03),
+    /**
+     * A 32-bit pointer, which is read as a hexadecimal string for {@link VDFNode#getPointer(String)}.
+     */
+    POINTER(0x04),
+    /**
+     * A null-terminated UTF-16LE string.
+     */
+    WIDE_STRING(0x05),
+    /**
+     * An RGBA color, which is read as a string of four space-separated components.
+     */
+    COLOR(0x06),
+    /**
+     * A 64-bit unsigned integer.
+     */
+    UINT64(0x07),
+    /**
+     * The end of a node.
+     */
+    END(0x08),
+    /**
+     * A 64-bit signed integer.
+     */
+    INT64(0x0A),
+    /**
+     * The end of a node, as written by some tools.
+     */
+    ALTERNATE_END(0x0B);
+
+    private static final VDFBinaryType[] BY_ID = new VDFBinaryType[0x0C];
+
+    static {
+        for (VDFBinaryType type : values())
+            BY_ID[type.id] = type;
+    }
+
+    private final int id;
+
+    VDFBinaryType(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the byte that marks entries of this type.
+     * @return the type ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns whether entries of this type hold a value that can be stored in a {@link VDFNode}.
+     * @return if this type is a value type
+     */
+    public boolean isValue() {
+        return this != NONE && this != END && this != ALTERNATE_END;
+    }
+
+    /**
+     * Finds the type marked by a byte.
+     * @param id the type ID
+     * @return the type, or null if the ID is unknown
+     */
+    public static VDFBinaryType byId(int id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+}
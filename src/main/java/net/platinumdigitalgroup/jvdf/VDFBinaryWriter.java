@@ -0,0 +1,190 @@
+package net.platinumdigitalgroup.jvdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes VDF nodes as binary VDF (binary KeyValues) documents.
+ * <p>
+ * Values are written as strings unless their key has been given another type, for example with the types recorded by
+ * a {@link VDFBinaryReader}, in which case the string is converted back to that type. Values that can't be converted
+ * to their key's type, such as a key that holds a number in one node and text in another, are written as strings.
+ */
+public class VDFBinaryWriter {
+
+    private final Map<String, VDFBinaryType> types = new HashMap<>();
+
+    public VDFBinaryWriter() {
+    }
+
+    /**
+     * Sets the type that values with a key are written as.
+     * @param key the key name
+     * @param type the value type
+     * @return this
+     */
+    public VDFBinaryWriter setType(String key, VDFBinaryType type) {
+        if (!type.isValue())
+            throw new IllegalArgumentException(type + " is not a value type");
+        types.put(key, type);
+        return this;
+    }
+
+    /**
+     * Sets the types that values are written as, by key name.
+     * @param types the value types
+     * @return this
+     */
+    public VDFBinaryWriter setTypes(Map<String, VDFBinaryType> types) {
+        types.forEach(this::setType);
+        return this;
+    }
+
+    /**
+     * Writes a node as a binary VDF document.
+     * @param root the root node
+     * @return the document
+     */
+    public byte[] write(VDFNode root) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeNode(root, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a node as a binary VDF document to a stream.
+     * @param root the root node
+     * @param out the stream to write to
+     * @throws IOException if the stream could not be written to
+     */
+    public void write(VDFNode root, OutputStream out) throws IOException {
+        out.write(write(root));
+    }
+
+    /**
+     * Writes the entries of a node in the order they were put, followed by its end marker.
+     * @param node the node
+     * @param out the stream to write to
+     */
+    private void writeNode(VDFNode node, ByteArrayOutputStream out) {
+        for (Map.Entry<String, Object> entry : node.getEntryList()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof VDFNode) {
+                out.write(VDFBinaryType.NONE.getId());
+                writeString(key, out);
+                writeNode((VDFNode) value, out);
+            } else {
+                writeValue(key, (String) value, out);
+            }
+        }
+        out.write(VDFBinaryType.END.getId());
+    }
+
+    /**
+     * Writes a value entry as the type of its key, or as a string if the value can't be converted to that type.
+     * @param key the key name
+     * @param value the value
+     * @param out the stream to write to
+     */
+    private void writeValue(String key, String value, ByteArrayOutputStream out) {
+        VDFBinaryType type = types.getOrDefault(key, VDFBinaryType.STRING);
+
+        // Numbers are parsed before anything is written, so a value that doesn't parse can still fall back
+        long number = 0;
+        try {
+            switch (type) {
+                case INT32:
+                    number = Integer.parseInt(value);
+                    break;
+                case FLOAT32:
+                    number = Float.floatToIntBits(Float.parseFloat(value));
+                    break;
+                case POINTER:
+                    number = Integer.parseUnsignedInt(value, 16);
+                    break;
+                case COLOR:
+                    number = parseColor(value);
+                    break;
+                case UINT64:
+                    number = Long.parseUnsignedLong(value);
+                    break;
+                case INT64:
+                    number = Long.parseLong(value);
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            type = VDFBinaryType.STRING;
+        }
+
+        out.write(type.getId());
+        writeString(key, out);
+
+        switch (type) {
+            case INT32:
+            case FLOAT32:
+            case POINTER:
+            case COLOR:
+                writeInt((int) number, out);
+                break;
+            case WIDE_STRING:
+                out.writeBytes(value.getBytes(StandardCharsets.UTF_16LE));
+                out.write(0);
+                out.write(0);
+                break;
+            case UINT64:
+            case INT64:
+                writeLong(number, out);
+                break;
+            default:
+                writeString(value, out);
+                break;
+        }
+    }
+
+    /**
+     * Packs a color of space-separated components into the order they're written in.
+     * @param value the color
+     * @return the packed color
+     * @throws NumberFormatException if the color has more than four components, or one isn't a byte
+     */
+    private static int parseColor(String value) {
+        String[] components = value.split(" ");
+        if (components.length > 4)
+            throw new NumberFormatException("Too many color components: " + value);
+
+        int color = 0;
+        for (int i = 0; i < 4; i++) {
+            // Text colors may leave out the alpha component
+            int component = i < components.length ? Integer.parseInt(components[i]) : 255;
+            if (component < 0 || component > 255)
+                throw new NumberFormatException("Color component out of range: " + value);
+            color |= component << (i * 8);
+        }
+        return color;
+    }
+
+    private static void writeString(String value, ByteArrayOutputStream out) {
+        out.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+    }
+
+    private static void writeInt(int value, ByteArrayOutputStream out) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+
+    private static void writeLong(long value, ByteArrayOutputStream out) {
+        writeInt((int) value, out);
+        writeInt((int) (value >> 32), out);
+    }
+
+}
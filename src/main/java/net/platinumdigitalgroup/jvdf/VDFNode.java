@@ -17,18 +17,51 @@ limitations under the License.
 package net.platinumdigitalgroup.jvdf;
 
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * An iterable tree structure that represents a set of key-value pairs in a VDF document.
+ * <p>
+ * Entries are kept in insertion order in flat key and value arrays, so a key may appear any number of times. As a
+ * map, each key corresponds to all of its values. Small nodes are searched directly, and larger ones build a hash
+ * index of their keys the first time a key is looked up.
+ * <p>
+ * Nodes are not thread-safe. A node that is no longer being changed may be read from any number of threads, as its
+ * index is only published once it has been fully built, but changes must not overlap with any other access.
  * @author Brendan Heinonen
  */
-public class VDFNode extends LinkedHashMap<String, Object[]> {
-    private final List<Map.Entry<String, Object>> entryList = new ArrayList<>();
+public class VDFNode extends AbstractMap<String, Object[]> {
+
+    /**
+     * Nodes with at most this many entries are searched without an index.
+     */
+    private static final int LINEAR_LIMIT = 8;
+
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    /**
+     * The key and value of every entry, in insertion order.
+     */
+    private String[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+    private int entryCount;
+
+    /**
+     * The hash index, or null if it hasn't been built.
+     */
+    private volatile Index index;
+
+    private Set<Map.Entry<String, Object[]>> entrySet;
 
     /**
      * Puts a key/value pair into the map, or push it to the back of the multimap
@@ -37,22 +70,144 @@ public class VDFNode extends LinkedHashMap<String, Object[]> {
      * @return the value
      */
     public Object put(String key, Object value) {
-        if (value instanceof Integer i) {
-            value = i.toString();
+        value = checkValue(value);
+        if (entryCount == keys.length)
+            grow();
+
+        int entry = entryCount++;
+        keys[entry] = key;
+        values[entry] = value;
+        Index current = index;
+        if (current != null) {
+            current.link(entry);
+            if (current.keyCount * 2 > current.heads.length)
+                index = new Index();
         }
-        if (!(value instanceof String) && !(value instanceof VDFNode)) {
-            throw new IllegalArgumentException("VDFNode value must be String or VDFNode");
-        }
-        Object[] values = this.get(key);
-        if(values == null) {
-            this.put(key, new Object[]{ value });
+        return value;
+    }
+
+    /**
+     * Replaces every value that corresponds to a key. Existing values are replaced in place, and any extra values are
+     * pushed to the back of the multimap. Putting no values removes the key.
+     * @param key the key of the values
+     * @param newValues the values which correspond to the key
+     * @return the previous values, or null if the key did not exist in this node
+     */
+    @Override
+    public Object[] put(String key, Object[] newValues) {
+        Object[] checked = new Object[newValues.length];
+        for (int i = 0; i < checked.length; i++)
+            checked[i] = checkValue(newValues[i]);
+
+        Object[] previous = get(key);
+        int entry = firstEntry(key);
+        int i = 0;
+        for (; entry >= 0 && i < checked.length; entry = nextEntry(entry), i++)
+            values[entry] = checked[i];
+
+        if (entry >= 0) {
+            removeEntries(key, i);
         } else {
-            Object[] appendTo = Arrays.copyOf(values, values.length + 1);
-            appendTo[values.length] = value;
-            this.put(key, appendTo);
+            for (; i < checked.length; i++)
+                put(key, checked[i]);
         }
-        entryList.add(Map.entry(key, value));
-        return value;
+        return previous;
+    }
+
+    /**
+     * Returns every value that corresponds to a key. Values aren't stored per key, so every call allocates a new
+     * array, and writing to it doesn't change the node. Use {@link #put(String, Object[])} to replace values, or
+     * {@link #getString(String, int)} and {@link #getSubNode(String, int)} to read one without the array.
+     * @param key the key name
+     * @return a new array of the values, or null if the key does not exist in this node
+     */
+    @Override
+    public Object[] get(Object key) {
+        int first = firstEntry(key);
+        if (first < 0)
+            return null;
+
+        Object[] result = new Object[values(first)];
+        for (int entry = first, i = 0; entry >= 0; entry = nextEntry(entry), i++)
+            result[i] = values[entry];
+        return result;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return firstEntry(key) >= 0;
+    }
+
+    /**
+     * Removes every value that corresponds to a key.
+     * @param key the key name
+     * @return the removed values, or null if the key did not exist in this node
+     */
+    @Override
+    public Object[] remove(Object key) {
+        Object[] previous = get(key);
+        if (previous != null)
+            removeEntries(key, 0);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, entryCount, null);
+        Arrays.fill(values, 0, entryCount, null);
+        entryCount = 0;
+        index = null;
+    }
+
+    /**
+     * Returns the number of distinct keys in this node.
+     * @return the number of keys
+     */
+    @Override
+    public int size() {
+        Index current = ensureIndex();
+        if (current != null)
+            return current.keyCount;
+
+        int count = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (isFirstEntry(entry))
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entryCount == 0;
+    }
+
+    /**
+     * Returns a view of the distinct keys of this node and their values, in the order the keys were first put. Like
+     * {@link #get(Object)}, each {@link Map.Entry#getValue()} allocates a new array of the key's values, and writing to
+     * it doesn't change the node. {@link #getEntryList()} reads every entry without allocating arrays.
+     * @return the entry set
+     */
+    @Override
+    public Set<Map.Entry<String, Object[]>> entrySet() {
+        if (entrySet == null)
+            entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    /**
+     * Nodes are only equal to themselves, as their values are arrays.
+     * @param o the object to compare to
+     * @return if the object is this node
+     */
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
     }
 
     /**
@@ -61,18 +216,27 @@ public class VDFNode extends LinkedHashMap<String, Object[]> {
      * @return the number of values that correspond to the key
      */
     public int values(String key) {
-        Object[] values = this.get(key);
-        if(values == null)
-            return 0;
-        return values.length;
+        int first = firstEntry(key);
+        return first >= 0 ? values(first) : 0;
     }
 
     /**
-     * @return A list of all entries ever {@link #put(String, Object)} into this node.
-     * @apiNote Removals are never tracked.
+     * @return A list of all entries in this node, in the order they were {@link #put(String, Object)}.
+     * @apiNote The list is a view, so it reflects later changes to this node.
      */
     public List<Map.Entry<String, Object>> getEntryList() {
-        return entryList;
+        return new AbstractList<>() {
+            @Override
+            public Map.Entry<String, Object> get(int index) {
+                Objects.checkIndex(index, entryCount);
+                return Map.entry(keys[index], values[index]);
+            }
+
+            @Override
+            public int size() {
+                return entryCount;
+            }
+        };
     }
 
     /**
@@ -82,8 +246,7 @@ public class VDFNode extends LinkedHashMap<String, Object[]> {
      * @return the string value of the specified key, or null if the key does not exist in this node
      */
     public String getString(String key, int index) {
-        Object[] objects = this.get(key);
-        return objects != null ? (String) objects[index] : null;
+        return (String) getValue(key, index);
     }
 
     /**
@@ -214,7 +377,7 @@ public class VDFNode extends LinkedHashMap<String, Object[]> {
      * @return a VDFNode instance of the specified key, or null if the key does not exist in this node
      */
     public VDFNode getSubNode(String key, int index) {
-        return (VDFNode)this.get(key)[index];
+        return (VDFNode) getValue(key, index);
     }
 
     /**
@@ -223,16 +386,17 @@ public class VDFNode extends LinkedHashMap<String, Object[]> {
      * @return this
      */
     public VDFNode reduce(boolean recursive) {
-        this.entrySet()
-                .parallelStream()
-                // filter keys that have more than 1 value (multimapped)
-                .filter(e -> e.getValue()[0] instanceof VDFNode)
-                .forEach(e -> reduceKeyValue(e, recursive));
+        // Reducing a key only removes entries after its first, so the entries up to here stay put
+        for (int entry = 0; entry < entryCount; entry++) {
+            // filter keys whose first value is a node
+            if (values[entry] instanceof VDFNode && isFirstEntry(entry))
+                reduceKeyValue(keys[entry], recursive);
+        }
         return this;
     }
 
-    private void reduceKeyValue(Map.Entry<String, Object[]> entry, boolean recursive) {
-        Object[] nodes = entry.getValue();
+    private void reduceKeyValue(String key, boolean recursive) {
+        Object[] nodes = this.get(key);
 
         // The first value becomes the node that we're joining
         VDFNode newNode = (VDFNode)nodes[0];
@@ -252,7 +416,7 @@ public class VDFNode extends LinkedHashMap<String, Object[]> {
             node.join(newNode);
         }
 
-        this.put(entry.getKey(), new Object[] { newNode });
+        this.put(key, new Object[] { newNode });
     }
 
     /**
@@ -274,5 +438,302 @@ public class VDFNode extends LinkedHashMap<String, Object[]> {
         return reduce(true);
     }
 
+    /**
+     * Fetches a value by name and index.
+     * @param key the key name
+     * @param index the nth key
+     * @return the value, or null if the key does not exist in this node
+     * @throws IndexOutOfBoundsException if the key has no more than index values
+     */
+    private Object getValue(String key, int index) {
+        int entry = firstEntry(key);
+        if (entry < 0)
+            return null;
+
+        for (int i = 0; i < index; i++) {
+            entry = nextEntry(entry);
+            if (entry < 0)
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for key " + key);
+        }
+        return values[entry];
+    }
+
+    /**
+     * Checks that a value can be put into a node.
+     * @param value the value
+     * @return the value, with integers converted to strings
+     */
+    private static Object checkValue(Object value) {
+        if (value instanceof Integer i) {
+            value = i.toString();
+        }
+        if (!(value instanceof String) && !(value instanceof VDFNode)) {
+            throw new IllegalArgumentException("VDFNode value must be String or VDFNode");
+        }
+        return value;
+    }
+
+    /**
+     * Makes room for more entries.
+     */
+    private void grow() {
+        int capacity = keys.length + (keys.length >> 1) + 2;
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        Index current = index;
+        if (current != null)
+            current.nextEntries = Arrays.copyOf(current.nextEntries, capacity);
+    }
+
+    /**
+     * Builds the hash index if this node is too large to search directly.
+     * @return the index, or null if the node is searched directly
+     */
+    private Index ensureIndex() {
+        Index current = index;
+        if (current == null && entryCount > LINEAR_LIMIT) {
+            current = new Index();
+            index = current;
+        }
+        return current;
+    }
+
+    /**
+     * Finds the first entry of a key.
+     * @param key the key name
+     * @return the entry, or -1 if the key does not exist in this node
+     */
+    private int firstEntry(Object key) {
+        if (key == null)
+            return -1;
+        Index current = ensureIndex();
+        if (current != null)
+            return current.heads[current.slot(key)];
+
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (keys[entry].equals(key))
+                return entry;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the next entry with the same key as an entry.
+     * @param entry the entry
+     * @return the next entry, or -1 if this is the last entry of its key
+     */
+    private int nextEntry(int entry) {
+        Index current = index;
+        if (current != null)
+            return current.nextEntries[entry];
+
+        String key = keys[entry];
+        for (int next = entry + 1; next < entryCount; next++) {
+            if (keys[next].equals(key))
+                return next;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether an entry is the first entry of its key.
+     * @param entry the entry
+     * @return if no earlier entry has the same key
+     */
+    private boolean isFirstEntry(int entry) {
+        return firstEntry(keys[entry]) == entry;
+    }
+
+    /**
+     * Counts the values of a key.
+     * @param first the first entry of the key
+     * @return the number of values
+     */
+    private int values(int first) {
+        Index current = index;
+        if (current != null)
+            return current.counts[current.slot(keys[first])];
+
+        int count = 0;
+        for (int entry = first; entry >= 0; entry = nextEntry(entry))
+            count++;
+        return count;
+    }
+
+    /**
+     * Removes the values of a key after its first few. The index is rebuilt the next time it's needed.
+     * @param key the key name
+     * @param keep the number of values to keep
+     */
+    private void removeEntries(Object key, int keep) {
+        int kept = 0;
+        int seen = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (keys[entry].equals(key) && seen++ >= keep)
+                continue;
+            keys[kept] = keys[entry];
+            values[kept] = values[entry];
+            kept++;
+        }
+        Arrays.fill(keys, kept, entryCount, null);
+        Arrays.fill(values, kept, entryCount, null);
+        entryCount = kept;
+        index = null;
+    }
+
+    /**
+     * A hash index of the keys of the node. Each slot holds the first and last entry of a key and its number of
+     * values, and each entry links to the next entry with the same key.
+     * <p>
+     * The index is built completely before it's published, so a reader that finds it never sees it half built.
+     */
+    private final class Index {
+
+        final int[] heads;
+        final int[] tails;
+        final int[] counts;
+        int[] nextEntries;
+        int keyCount;
+
+        /**
+         * Builds the index from every entry, with at most half of its slots used.
+         */
+        Index() {
+            int capacity = Integer.highestOneBit(Math.max(entryCount, 2)) * 4;
+            heads = new int[capacity];
+            Arrays.fill(heads, -1);
+            tails = new int[capacity];
+            counts = new int[capacity];
+            nextEntries = new int[keys.length];
+
+            for (int entry = 0; entry < entryCount; entry++)
+                link(entry);
+        }
+
+        /**
+         * Adds an entry to the index. The node replaces the index once more than half of its slots are used.
+         * @param entry the entry, which must be the last entry of its key
+         */
+        void link(int entry) {
+            nextEntries[entry] = -1;
+            int slot = slot(keys[entry]);
+            if (heads[slot] >= 0) {
+                nextEntries[tails[slot]] = entry;
+                tails[slot] = entry;
+                counts[slot]++;
+                return;
+            }
+
+            heads[slot] = entry;
+            tails[slot] = entry;
+            counts[slot] = 1;
+            keyCount++;
+        }
+
+        /**
+         * Finds the slot of a key.
+         * @param key the key name
+         * @return the slot holding the key, or the empty slot it would be put in
+         */
+        int slot(Object key) {
+            int hash = key.hashCode();
+            hash ^= hash >>> 16;
+
+            int mask = heads.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int head = heads[slot];
+                if (head < 0 || keys[head].equals(key))
+                    return slot;
+            }
+        }
+
+    }
+
+    /**
+     * The distinct keys of the node and their values.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object[]>> {
+
+        @Override
+        public Iterator<Map.Entry<String, Object[]>> iterator() {
+            return new Iterator<>() {
+                private int cursor = advance(0);
+                private String lastKey;
+
+                @Override
+                public boolean hasNext() {
+                    return cursor < entryCount;
+                }
+
+                @Override
+                public Map.Entry<String, Object[]> next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    lastKey = keys[cursor];
+                    cursor = advance(cursor + 1);
+                    return new NodeEntry(lastKey);
+                }
+
+                @Override
+                public void remove() {
+                    if (lastKey == null)
+                        throw new IllegalStateException();
+
+                    // Entries of the key before the cursor are removed, so the cursor moves back past them
+                    int removedBefore = 0;
+                    for (int entry = firstEntry(lastKey); entry >= 0 && entry < cursor; entry = nextEntry(entry))
+                        removedBefore++;
+                    VDFNode.this.remove(lastKey);
+                    cursor -= removedBefore;
+                    lastKey = null;
+                }
+
+                private int advance(int entry) {
+                    while (entry < entryCount && !isFirstEntry(entry))
+                        entry++;
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return VDFNode.this.size();
+        }
+
+        @Override
+        public void clear() {
+            VDFNode.this.clear();
+        }
+
+    }
+
+    /**
+     * A key of the node, whose value is read from and written to the node.
+     */
+    private final class NodeEntry implements Map.Entry<String, Object[]> {
+
+        private final String key;
+
+        NodeEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object[] getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object[] setValue(Object[] value) {
+            return put(key, value);
+        }
+
+    }
 
 }
@@ -16,6 +16,11 @@ limitations under the License.
 
 package net.platinumdigitalgroup.jvdf;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * Parses VDF documents into iterable tree structures.
  * @author Brendan Heinonen
@@ -41,49 +46,91 @@ public class VDFParser {
 
     /**
      * Parses a VDF document.
+     * With the default preprocessor, the document is preprocessed and parsed in a single pass.
      * @param vdf the VDF document to parse
      * @return a VDFNode which represents the root of the VDF document
      */
     public VDFNode parse(String vdf) {
+        if (preprocessor.getClass() == VDFPreprocessor.class)
+            return parse((CharSequence) vdf);
         return parse(vdf.split("\\n"));
     }
 
+    /**
+     * Parses a VDF document in a single pass, stripping comments, conditionals and whitespace as it goes instead of
+     * running the preprocessor. This always behaves like the default preprocessor.
+     * @param vdf the VDF document to parse
+     * @return a VDFNode which represents the root of the VDF document
+     */
+    public VDFNode parse(CharSequence vdf) {
+        return parse(new VDFReader(vdf));
+    }
+
+    /**
+     * Parses an encoded VDF document in a single pass, like {@link #parse(CharSequence)}. A leading byte order mark
+     * is skipped.
+     * <p>
+     * UTF-8, UTF-16 and single-byte ASCII-compatible documents are tokenized directly on their encoded bytes, and
+     * only the keys and values that are kept are decoded. Documents in other charsets are decoded first.
+     * @param vdf the VDF document to parse, from its position to its limit. The buffer's position is not changed.
+     * @param charset the charset of the document
+     * @return a VDFNode which represents the root of the VDF document
+     */
+    public VDFNode parse(ByteBuffer vdf, Charset charset) {
+        return parse(new VDFReader(vdf, charset));
+    }
+
+    /**
+     * Parses an encoded VDF document in a single pass, like {@link #parse(ByteBuffer, Charset)}.
+     * @param vdf the VDF document to parse
+     * @param charset the charset of the document
+     * @return a VDFNode which represents the root of the VDF document
+     */
+    public VDFNode parse(byte[] vdf, Charset charset) {
+        return parse(ByteBuffer.wrap(vdf), charset);
+    }
+
     /**
      * Parses a VDF document
      * @param vdf an array of lines representing a VDF document to parse
      * @return a VDFNode which represents the node of the VDF document
      */
     public VDFNode parse(String[] vdf) {
-        String processed = preprocessor.process(vdf);
-        VDFParserState state = new VDFParserState();
-
-        char[] arr = processed.toCharArray();
-        for(char c : arr) {
-            switch (c) {
-                case '"':
-                    state.quote();
-                    break;
-                case ' ':
-                    state.space();
-                    break;
-                case '\\':
-                    state.escape();
+        return parse(VDFReader.preprocessed(preprocessor.process(vdf)));
+    }
+
+    /**
+     * Builds the tree of a VDF document from the events of a reader.
+     * @param reader the reader over the VDF document
+     * @return a VDFNode which represents the root of the VDF document
+     */
+    private static VDFNode parse(VDFReader reader) {
+        VDFNode root = new VDFNode();
+        Deque<VDFNode> parents = new ArrayDeque<>();
+        VDFNode current = root;
+        String key = null;
+
+        while (true) {
+            switch (reader.next()) {
+                case KEY:
+                    key = reader.getText();
                     break;
-                case '{':
-                    state.beginSubNode();
+                case VALUE:
+                    current.put(key, reader.getText());
                     break;
-                case '}':
-                    state.endSubNode();
+                case BEGIN_OBJECT:
+                    VDFNode node = new VDFNode();
+                    current.put(key, node);
+                    parents.push(current);
+                    current = node;
                     break;
-                default:
-                    state.character(c);
+                case END_OBJECT:
+                    current = parents.pop();
                     break;
+                case END_DOCUMENT:
+                    return root;
             }
         }
-        state.endParse();
-
-        return state.root();
     }
 
-
 }
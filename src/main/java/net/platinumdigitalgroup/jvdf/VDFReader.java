@@ -0,0 +1,446 @@
+package net.platinumdigitalgroup.jvdf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntSupplier;
+
+/**
+ * Reads a VDF document as a stream of events, without building a tree of {@link VDFNode}s.
+ * <p>
+ * Every entry of an object is reported as a {@link Event#KEY} event, followed by either a {@link Event#VALUE} event
+ * or a {@link Event#BEGIN_OBJECT} event. The entries of an object are followed by {@link Event#END_OBJECT}, and the
+ * entries of the root by {@link Event#END_DOCUMENT}. Only the current key and value are kept, so reading a document
+ * takes the same memory however large or deeply nested it is. Values are only decoded when they are asked for, so
+ * entries that are skipped cost little more than finding where they end.
+ * <p>
+ * Documents are read the same way as by {@link VDFParser#parse(CharSequence)}, so reading every event and adding each
+ * entry to the current node gives the same tree as parsing.
+ */
+public class VDFReader {
+
+    /**
+     * The events of a VDF document.
+     */
+    public enum Event {
+        /**
+         * The start of an object. This always follows the {@link #KEY} of the object.
+         */
+        BEGIN_OBJECT,
+        /**
+         * The key of an entry. This is always followed by a {@link #VALUE} or a {@link #BEGIN_OBJECT}.
+         */
+        KEY,
+        /**
+         * A string value. This always follows the {@link #KEY} of the value.
+         */
+        VALUE,
+        /**
+         * The end of an object.
+         */
+        END_OBJECT,
+        /**
+         * The end of the document.
+         */
+        END_DOCUMENT
+    }
+
+    /**
+     * Returns the characters of the preprocessed document, followed by {@link VDFTokenizer#END}.
+     */
+    private final IntSupplier input;
+
+    /**
+     * Buffer that represents the last token. This is cleared after every control character.
+     */
+    private final VDFTokenBuffer currentString;
+
+    /**
+     * These flags mirror {@link VDFParserState}.
+     */
+    private boolean quoteState = false;
+    private boolean escapePending = false;
+    private boolean valuePending = false;
+    private boolean nullString = false;
+
+    /**
+     * The key name that the next value or object corresponds to.
+     */
+    private String keyName = "";
+
+    /**
+     * The number of objects that are open.
+     */
+    private int depth;
+
+    /**
+     * The current event, and the event which has already been read to follow it.
+     */
+    private Event event;
+    private Event pendingEvent;
+
+    /**
+     * The decoded current value. While a value is the current or pending event, it stays in the token buffer until
+     * it is asked for.
+     */
+    private String value;
+    private boolean resetPending;
+
+    private boolean inputEnded;
+
+    /**
+     * Initializes the reader over a VDF document, preprocessing it as it's read like
+     * {@link VDFParser#parse(CharSequence)}.
+     * @param vdf the VDF document to read
+     */
+    public VDFReader(CharSequence vdf) {
+        this(new VDFTokenizer(vdf));
+    }
+
+    /**
+     * Initializes the reader over an encoded VDF document, like {@link VDFParser#parse(ByteBuffer, Charset)}.
+     * @param vdf the VDF document to read, from its position to its limit. The buffer's position is not changed.
+     * @param charset the charset of the document
+     */
+    public VDFReader(ByteBuffer vdf, Charset charset) {
+        this(VDFTokenizer.of(vdf, charset));
+    }
+
+    /**
+     * Initializes the reader over an encoded VDF document, like {@link VDFParser#parse(byte[], Charset)}.
+     * @param vdf the VDF document to read
+     * @param charset the charset of the document
+     */
+    public VDFReader(byte[] vdf, Charset charset) {
+        this(ByteBuffer.wrap(vdf), charset);
+    }
+
+    /**
+     * Initializes the reader over the characters of a tokenizer.
+     * @param tokenizer the tokenizer
+     */
+    private VDFReader(VDFTokenizer tokenizer) {
+        this(tokenizer::next, tokenizer.newTokenBuffer());
+    }
+
+    /**
+     * Initializes the reader over a preprocessed document.
+     * @param input returns the characters of the document, followed by {@link VDFTokenizer#END}
+     * @param tokenBuffer the buffer to collect tokens in
+     */
+    private VDFReader(IntSupplier input, VDFTokenBuffer tokenBuffer) {
+        this.input = input;
+        this.currentString = tokenBuffer;
+    }
+
+    /**
+     * Initializes a reader over a document that has already been preprocessed.
+     * @param vdf the output of a {@link VDFPreprocessor}
+     * @return the reader
+     */
+    static VDFReader preprocessed(String vdf) {
+        PrimitiveIterator.OfInt chars = vdf.chars().iterator();
+        return new VDFReader(() -> chars.hasNext() ? chars.nextInt() : VDFTokenizer.END, VDFTokenBuffer.chars());
+    }
+
+    /**
+     * Returns whether there are more events, which is until {@link Event#END_DOCUMENT} has been read.
+     * @return if {@link #next()} can be called
+     */
+    public boolean hasNext() {
+        return event != Event.END_DOCUMENT;
+    }
+
+    /**
+     * Reads the next event.
+     * @return the event
+     * @throws VDFParseException if the objects in the document don't match up
+     * @throws NoSuchElementException if the end of the document has already been read
+     */
+    public Event next() {
+        if (event == Event.END_DOCUMENT)
+            throw new NoSuchElementException();
+        value = null;
+
+        if (pendingEvent != null) {
+            event = pendingEvent;
+            pendingEvent = null;
+            if (event == Event.BEGIN_OBJECT)
+                depth++;
+            return event;
+        }
+
+        if (resetPending) {
+            resetString();
+            resetPending = false;
+        }
+
+        event = null;
+        while (event == null) {
+            if (inputEnded) {
+                if (depth != 0) {
+                    throw new VDFParseException("The root node was not at the top of the stack at the end of parsing. " +
+                            "There was a subnode mismatch (misplaced '{'?)");
+                }
+                event = Event.END_DOCUMENT;
+                break;
+            }
+
+            int c = input.getAsInt();
+            if (c == VDFTokenizer.END) {
+                // Call space to commit the current KV pair
+                inputEnded = true;
+                space();
+            } else {
+                handle((char) c);
+            }
+        }
+
+        return event;
+    }
+
+    /**
+     * Returns the current event.
+     * @return the current event, or null if nothing has been read yet
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns the text of the current event.
+     * @return the key of a {@link Event#KEY}, the value of a {@link Event#VALUE}, or null for other events
+     */
+    public String getText() {
+        if (event == Event.KEY)
+            return keyName;
+        if (event == Event.VALUE) {
+            if (value == null)
+                value = currentString.toString();
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of objects that are open. This is 0 for entries of the root, and is changed by
+     * {@link Event#BEGIN_OBJECT} and {@link Event#END_OBJECT} events.
+     * @return the depth of the current event
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Skips the rest of the current entry. If the current event is a {@link Event#KEY}, its value or object is
+     * skipped. If it is a {@link Event#BEGIN_OBJECT}, events are skipped up to the matching {@link Event#END_OBJECT}.
+     * Otherwise, nothing is skipped.
+     */
+    public void skip() {
+        if (event == Event.KEY) {
+            if (next() != Event.BEGIN_OBJECT)
+                return;
+        } else if (event != Event.BEGIN_OBJECT) {
+            return;
+        }
+
+        int target = depth - 1;
+        while (depth > target)
+            next();
+    }
+
+    /**
+     * Reads the entries of the current object, skipping them, until an object with a key is found. The object's
+     * {@link Event#BEGIN_OBJECT} is the current event afterwards.
+     * @param key the key of the object
+     * @return if the object was found before the end of the current object
+     */
+    public boolean findObject(String key) {
+        while (next() == Event.KEY) {
+            if (!keyName.equals(key)) {
+                skip();
+            } else if (next() == Event.BEGIN_OBJECT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the entries of the current object, skipping them, until a value with a key is found.
+     * @param key the key of the value
+     * @return the value, or null if the current object ended first
+     */
+    public String findValue(String key) {
+        while (next() == Event.KEY) {
+            if (!keyName.equals(key)) {
+                skip();
+            } else if (next() == Event.VALUE) {
+                return getText();
+            } else {
+                skip();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Passes a character of the preprocessed document to the matching handler.
+     * @param c the character
+     */
+    private void handle(char c) {
+        switch (c) {
+            case '"':
+                quote();
+                break;
+            case ' ':
+                space();
+                break;
+            case '\\':
+                escape();
+                break;
+            case '{':
+                beginSubNode();
+                break;
+            case '}':
+                endSubNode();
+                break;
+            default:
+                character(c);
+                break;
+        }
+    }
+
+    /**
+     * Handle a quote character.
+     */
+    private void quote() {
+        if (escapePending) {
+            // If there's an escape pending, this quote is escaped
+            character('"');
+        } else {
+            // If there's no escape pending, we're entering or leaving a quoted string
+            quoteState = !quoteState;
+
+            if (quoteState) {
+                // If we're starting a new quoted string, reset the current string
+                resetString();
+            } else {
+                // Otherwise, the string has been terminated
+                if (currentString.length() == 0)
+                    nullString = true;
+
+                // Simulate a space at the end of a quote
+                space();
+            }
+        }
+    }
+
+    /**
+     * Handle a whitespace character.
+     */
+    private void space() {
+        // If we're inside a quoted string, append space to the current string
+        if (quoteState) {
+            character(' ');
+            return;
+        }
+
+        // Ignore meaningless spaces
+        if (currentString.length() == 0 && !nullString)
+            return;
+
+        valuePending = !valuePending;
+
+        if (valuePending) {
+            // The last string was the key name
+            keyName = currentString.toString();
+            resetString();
+        } else {
+            // The last string was the value, which is left in the buffer until the next event
+            event = Event.KEY;
+            pendingEvent = Event.VALUE;
+            resetPending = true;
+        }
+    }
+
+    /**
+     * Handle an escape character.
+     */
+    private void escape() {
+        // This shouldn't just set escapePending to true because \\ is a valid escape sequence.
+        escapePending = !escapePending;
+
+        // If escape was just disabled, we know that this character must be \, which is the escape sequence \\
+        if (!escapePending) {
+            character('\\');
+        }
+    }
+
+    /**
+     * Handle a miscellaneous non-control character.
+     * @param c a non-control character
+     */
+    private void character(char c) {
+        // Check specced escape sequence
+        if (escapePending) {
+            if (c == 'n')
+                c = '\n';
+        }
+
+        currentString.append(c);
+
+        // Reset the escape state
+        escapePending = false;
+    }
+
+    /**
+     * Start a subnode context.
+     */
+    private void beginSubNode() {
+        if (escapePending || quoteState) {
+            character('{');
+        } else {
+            event = Event.KEY;
+            pendingEvent = Event.BEGIN_OBJECT;
+            resetKV();
+        }
+    }
+
+    /**
+     * End a subnode context.
+     */
+    private void endSubNode() {
+        if (escapePending || quoteState) {
+            character('}');
+        } else {
+            // At this point, we're done adding key/values, so reset the string buffer and KV state
+            resetKV();
+
+            // Ending the root means there were more ended subnodes than subnodes that existed
+            if (depth == 0) {
+                throw new VDFParseException("The root node was popped. There was a subnode mismatch (misplaced '}'?).");
+            }
+            depth--;
+            event = Event.END_OBJECT;
+        }
+    }
+
+    /**
+     * Clears the string buffer.
+     */
+    private void resetString() {
+        currentString.clear();
+        nullString = false;
+    }
+
+    /**
+     * Resets the KV state.
+     */
+    private void resetKV() {
+        resetString();
+        valuePending = false;
+    }
+
+}
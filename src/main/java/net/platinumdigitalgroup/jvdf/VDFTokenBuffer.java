@@ -0,0 +1,130 @@
+package net.platinumdigitalgroup.jvdf;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Collects the code units of the token the parser is currently reading.
+ */
+abstract class VDFTokenBuffer {
+
+    /**
+     * Creates a buffer for tokens read from a document of chars.
+     * @return the token buffer
+     */
+    static VDFTokenBuffer chars() {
+        return new Chars();
+    }
+
+    /**
+     * Creates a buffer for tokens read from an encoded document. Code units are stored in their encoded form, and
+     * only decoded when the parser keeps the token as a key or value.
+     * @param charset the charset of the document
+     * @param unitSize the size of a code unit, in bytes (1 or 2)
+     * @param order the byte order of two-byte code units
+     * @return the token buffer
+     */
+    static VDFTokenBuffer encoded(Charset charset, int unitSize, ByteOrder order) {
+        return new Encoded(charset, unitSize, order);
+    }
+
+    /**
+     * Appends a code unit to the token.
+     * @param unit the code unit
+     */
+    abstract void append(int unit);
+
+    /**
+     * Returns the number of code units in the token.
+     * @return the token length
+     */
+    abstract int length();
+
+    /**
+     * Empties the token.
+     */
+    abstract void clear();
+
+    /**
+     * Returns the decoded token.
+     * @return the token
+     */
+    @Override
+    public abstract String toString();
+
+    private static final class Chars extends VDFTokenBuffer {
+
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        void append(int unit) {
+            builder.append((char) unit);
+        }
+
+        @Override
+        int length() {
+            return builder.length();
+        }
+
+        @Override
+        void clear() {
+            builder.setLength(0);
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+
+    }
+
+    private static final class Encoded extends VDFTokenBuffer {
+
+        private final Charset charset;
+        private final int unitSize;
+        private final boolean bigEndian;
+
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        Encoded(Charset charset, int unitSize, ByteOrder order) {
+            this.charset = charset;
+            this.unitSize = unitSize;
+            this.bigEndian = order == ByteOrder.BIG_ENDIAN;
+        }
+
+        @Override
+        void append(int unit) {
+            if (size + unitSize > bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+
+            if (unitSize == 1) {
+                bytes[size++] = (byte) unit;
+            } else if (bigEndian) {
+                bytes[size++] = (byte) (unit >> 8);
+                bytes[size++] = (byte) unit;
+            } else {
+                bytes[size++] = (byte) unit;
+                bytes[size++] = (byte) (unit >> 8);
+            }
+        }
+
+        @Override
+        int length() {
+            return size / unitSize;
+        }
+
+        @Override
+        void clear() {
+            size = 0;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, size, charset);
+        }
+
+    }
+
+}
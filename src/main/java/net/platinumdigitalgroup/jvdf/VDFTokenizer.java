@@ -0,0 +1,263 @@
+package net.platinumdigitalgroup.jvdf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Produces the same character stream as {@link VDFPreprocessor#process(String)}, one character at a time, in a
+ * single pass over the original document. Comments and conditionals are stripped and whitespace is collapsed as the
+ * characters are read, so no per-line strings or joined document are ever built.
+ * <p>
+ * The document is read as a sequence of code units, which may be chars or units of an encoded document. Every
+ * character the preprocessor looks at is ASCII, so units of ASCII-compatible encodings can be tokenized without
+ * decoding them first. Non-ASCII units are passed through unchanged.
+ */
+class VDFTokenizer {
+
+    /**
+     * Returned by {@link #next()} at the end of the document.
+     */
+    static final int END = -1;
+
+    private final IntUnaryOperator input;
+    private final int length;
+    private final Supplier<VDFTokenBuffer> tokenBuffers;
+
+    /**
+     * The index of the last character that isn't a newline. Lines are only separated by a space if there is a later
+     * non-empty line, just as splitting the document drops trailing empty lines.
+     */
+    private final int lastContent;
+
+    private int position;
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * Per-line preprocessor state. The quote state here mirrors the preprocessor, which tracks quotes separately from
+     * the parser.
+     */
+    private boolean openQuotes;
+    private boolean hitWord;
+    private boolean lineEmitted;
+
+    /**
+     * The end of the last whitespace run that was checked for reaching the end of the line, so that long runs inside
+     * quotes are only scanned once.
+     */
+    private int whitespaceRunEnd = -1;
+
+    /**
+     * Initializes the tokenizer over a whole VDF document.
+     * @param input the VDF document
+     */
+    VDFTokenizer(CharSequence input) {
+        this(input::charAt, input.length(), VDFTokenBuffer::chars);
+    }
+
+    /**
+     * Initializes the tokenizer over a whole VDF document made of code units.
+     * @param input a function returning the code unit at an index
+     * @param length the number of code units in the document
+     * @param tokenBuffers creates buffers that collect and decode this document's code units
+     */
+    private VDFTokenizer(IntUnaryOperator input, int length, Supplier<VDFTokenBuffer> tokenBuffers) {
+        this.input = input;
+        this.length = length;
+        this.tokenBuffers = tokenBuffers;
+
+        int last = length - 1;
+        while (last >= 0 && input.applyAsInt(last) == '\n')
+            last--;
+        this.lastContent = last;
+
+        this.lineEnd = findLineEnd(0);
+    }
+
+    /**
+     * Initializes a tokenizer over an encoded VDF document, skipping a leading byte order mark.
+     * <p>
+     * UTF-8, UTF-16 and single-byte ASCII-compatible documents are tokenized directly on their encoded bytes. Documents
+     * in other charsets are decoded first.
+     * @param vdf the VDF document, from its position to its limit. The buffer's position is not changed.
+     * @param charset the charset of the document
+     * @return the tokenizer
+     */
+    static VDFTokenizer of(ByteBuffer vdf, Charset charset) {
+        ByteBuffer buffer = vdf.slice();
+
+        if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) ||
+                charset.equals(StandardCharsets.ISO_8859_1)) {
+            if (charset.equals(StandardCharsets.UTF_8) && startsWith(buffer, 0xEF, 0xBB, 0xBF))
+                buffer.position(3);
+            ByteBuffer units = buffer.slice();
+
+            return new VDFTokenizer(
+                    i -> units.get(i) & 0xFF, units.remaining(),
+                    () -> VDFTokenBuffer.encoded(charset, 1, ByteOrder.LITTLE_ENDIAN)
+            );
+        }
+
+        if (charset.equals(StandardCharsets.UTF_16LE) || charset.equals(StandardCharsets.UTF_16BE) ||
+                charset.equals(StandardCharsets.UTF_16)) {
+            // Plain UTF-16 is big endian unless the byte order mark says otherwise
+            ByteOrder order = charset.equals(StandardCharsets.UTF_16LE) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            if (charset.equals(StandardCharsets.UTF_16) && startsWith(buffer, 0xFF, 0xFE))
+                order = ByteOrder.LITTLE_ENDIAN;
+            boolean littleEndian = order == ByteOrder.LITTLE_ENDIAN;
+            if (littleEndian ? startsWith(buffer, 0xFF, 0xFE) : startsWith(buffer, 0xFE, 0xFF))
+                buffer.position(2);
+            ByteBuffer units = buffer.slice().order(order);
+            Charset unitCharset = littleEndian ? StandardCharsets.UTF_16LE : StandardCharsets.UTF_16BE;
+            ByteOrder unitOrder = order;
+
+            return new VDFTokenizer(
+                    i -> units.getChar(i << 1), units.remaining() >> 1,
+                    () -> VDFTokenBuffer.encoded(unitCharset, 2, unitOrder)
+            );
+        }
+
+        return new VDFTokenizer(charset.decode(buffer));
+    }
+
+    /**
+     * Creates a buffer for collecting the code units returned by this tokenizer.
+     * @return the token buffer
+     */
+    VDFTokenBuffer newTokenBuffer() {
+        return tokenBuffers.get();
+    }
+
+    /**
+     * Returns the next character of the preprocessed document.
+     * @return the next character or code unit, or {@link #END}
+     */
+    int next() {
+        while (true) {
+            if (position >= lineEnd) {
+                // Separate non-empty lines with a space, like the preprocessor joining lines
+                if (lineEmitted) {
+                    lineEmitted = false;
+                    if (lastContent > lineEnd) {
+                        return ' ';
+                    }
+                }
+                if (lineEnd >= length) {
+                    return END;
+                }
+                startLine(lineEnd + 1);
+                continue;
+            }
+
+            int i = position++;
+            int c = input.applyAsInt(i);
+
+            if (c == '\r')
+                continue;
+
+            // Toggle open quote flag if we've encountered an unescaped quote
+            if (c == '"' && (i == lineStart || input.applyAsInt(i - 1) != '\\'))
+                openQuotes = !openQuotes;
+
+            // Strip C-style comments and conditional statements, which take up the rest of the line
+            if (!openQuotes && ((c == '/' && i + 1 < lineEnd && input.applyAsInt(i + 1) == '/') || c == '[')) {
+                position = lineEnd;
+                continue;
+            }
+
+            if (isWhitespace(c)) {
+                // Trim whitespace from the beginning of the line
+                if (!hitWord)
+                    continue;
+
+                // Skip whitespace characters in between words
+                if (!openQuotes && i + 1 < lineEnd && isWhitespace(input.applyAsInt(i + 1)))
+                    continue;
+
+                // Trim whitespace from the end of the line
+                if (restIsWhitespace(i)) {
+                    position = lineEnd;
+                    continue;
+                }
+
+                lineEmitted = true;
+                return ' ';
+            }
+
+            hitWord = true;
+            lineEmitted = true;
+            return c;
+        }
+    }
+
+    /**
+     * Moves to the start of a line and resets the per-line state.
+     * @param start the index of the first character of the line
+     */
+    private void startLine(int start) {
+        position = start;
+        lineStart = start;
+        lineEnd = findLineEnd(start);
+        openQuotes = false;
+        hitWord = false;
+    }
+
+    /**
+     * Finds the end of the line starting at an index.
+     * @param start the index of the first character of the line
+     * @return the index of the terminating newline, or the length of the document
+     */
+    private int findLineEnd(int start) {
+        for (int i = start; i < length; i++) {
+            if (input.applyAsInt(i) == '\n')
+                return i;
+        }
+        return length;
+    }
+
+    /**
+     * Determines whether the rest of the current line, starting at a whitespace character, is whitespace.
+     * @param start the index of a whitespace character
+     * @return if only whitespace follows
+     */
+    private boolean restIsWhitespace(int start) {
+        if (start >= whitespaceRunEnd) {
+            int end = start;
+            while (end < lineEnd && isWhitespace(input.applyAsInt(end)))
+                end++;
+            whitespaceRunEnd = end;
+        }
+        return whitespaceRunEnd == lineEnd;
+    }
+
+    /**
+     * Determines whether a buffer starts with a sequence of bytes.
+     * @param buffer the buffer to check, from index 0
+     * @param bytes the expected bytes
+     * @return if the buffer starts with the bytes
+     */
+    private static boolean startsWith(ByteBuffer buffer, int... bytes) {
+        if (buffer.limit() < bytes.length)
+            return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if ((buffer.get(i) & 0xFF) != bytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether or not a character is considered a VDF whitespace character, as in
+     * {@link VDFPreprocessor}.
+     * @param c the character to test
+     * @return if the character is considered VDF whitespace character
+     */
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == 0x0B;
+    }
+
+}